@@ -1,11 +1,19 @@
 package tablut;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
 import static tablut.Piece.*;
 
 /** A Player that automatically generates moves.
  *  @author Andrew Kaplan
  */
-class AI extends Player {
+class AI extends AutoPlayer {
 
     /** A position-score magnitude indicating a win (for white if positive,
      *  black if negative). */
@@ -16,6 +24,37 @@ class AI extends Player {
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
 
+    /** Number of nodes between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /** Number of iterations that must agree on the best move before it
+     *  is considered stable. */
+    private static final int STABLE_ITERATIONS = 3;
+    /** Percentages of its share of the time left spent on a move whose
+     *  best move is stable, and on one whose best move just changed. */
+    private static final int STABLE_PERCENT = 50, UNSTABLE_PERCENT = 150;
+
+    /** Threads running helper searches for all AIs whose controllers
+     *  have no search pool. */
+    private static final ExecutorService HELPERS =
+        Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "tablut-helper");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** Threads running pondering searches and their helpers, at low
+     *  priority so that they yield to searches for moves, and apart
+     *  from any controller's search pool so that a search waiting for
+     *  an opponent's move never holds one of its threads. */
+    private static final ExecutorService PONDERERS =
+        Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "tablut-ponder");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+
     /** A new AI with no piece or controller (intended to produce
      *  a template). */
     AI() {
@@ -29,98 +68,699 @@ class AI extends Player {
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        AI result = new AI(piece, controller);
+        result.configure(config());
+        return result;
     }
 
+    /** Uses the thread count of CONFIG and, from my next search on, a
+     *  table of its size. */
     @Override
-    String myMove() {
-        String move = findMove().toString();
-        System.out.println("* " + move);
-        return move;
+    void configure(EngineConfig config) {
+        setThreads(config.threads());
+        if (_table != null) {
+            _table.close();
+            _table = null;
+        }
+        super.configure(config);
     }
 
+    /** Also closes my table, if I have one. */
     @Override
-    boolean isManual() {
-        return false;
+    void close() {
+        super.close();
+        if (_table != null) {
+            _table.close();
+            _table = null;
+        }
     }
 
-    /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
+    @Override
+    void ponder() {
         Board b = new Board(board());
-        _lastFoundMove = null;
-        int sense;
+        if (_pondering != null && _ponderBase == b.hash()) {
+            return;
+        }
+        stopPondering();
+        Move reply = _expectedReply;
+        if (reply == null || b.winner() != null || b.moveLimitReached()
+            || !b.isLegal(reply.from()) || !b.isLegal(reply)) {
+            return;
+        }
+        _ponderBase = b.hash();
+        b.makeMove(reply);
+        _ponderHash = b.hash();
+        _ponderLimits = limits().setPonder(true);
+        SearchLimits limits = _ponderLimits;
+        reset();
+        _pondering = PONDERERS.submit(() -> search(b, limits));
+    }
+
+    @Override
+    void stopPondering() {
+        finishPondering(false);
+    }
 
-        if (b.turn() == WHITE) {
-            sense = 1;
+    /** End the current ponder search, if any.  If HIT, it continues as a
+     *  normal search and its result is returned; otherwise it is abandoned
+     *  (keeping what it has added to my table) and null is returned. */
+    private Move finishPondering(boolean hit) {
+        Future<Move> search = _pondering;
+        if (search == null) {
+            return null;
+        }
+        _pondering = null;
+        if (hit) {
+            _ponderLimits.setPonder(false);
+            ponderHit();
         } else {
-            sense = -1;
+            stop();
+        }
+        try {
+            Move best = search.get();
+            return hit ? best : null;
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Return a move for me from the current position, assuming there
+     *  is a move.  Uses the result of pondering if my opponent played
+     *  the expected reply. */
+    @Override
+    Move findMove() {
+        Move pondered =
+            finishPondering(_pondering != null
+                            && _ponderHash == board().hash());
+        if (pondered != null) {
+            return pondered;
+        }
+        reset();
+        ExecutorService pool = _controller.searchPool();
+        SearchLimits limits = limits();
+        if (pool == null) {
+            return search(board(), limits);
+        }
+        Board board = board();
+        try {
+            return pool.submit(() -> search(board, limits)).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
         }
+    }
 
-        findMove(b, maxDepth(b), true, sense, INFTY * -1, INFTY);
+    /** Return the best move found by searching BOARD (which is not
+     *  modified) within LIMITS, or null if the side to move has no legal
+     *  move.  Once the move limit is reached, any legal move is returned,
+     *  since all lose.  Searches by iterative deepening, reporting each
+     *  completed depth to my info listener, if any.  Another thread may
+     *  end the search early with stop().  In a timed game, the time
+     *  spent is chosen by allotTime and adjusted by timeToStop. */
+    @Override
+    Move search(Board board, SearchLimits limits) {
+        Board b = new Board(board);
+        _limits = limits;
+        _stats.clear();
+        _startTime = System.nanoTime();
+        _lastFoundMove = null;
+        _lines = List.of();
+        _rootScores = new int[limits.multiPV()];
+        allotTime(b);
+        table().newSearch();
+        if (!limits.deterministic()) {
+            startHelpers(b);
+        }
 
-        return _lastFoundMove;
+        Events.Search event = new Events.Search();
+        event.begin();
+        int sense = b.turn() == WHITE ? 1 : -1;
+        Move best = null;
+        int score = 0, stable = 0;
+        try {
+            for (int depth = 1; depth <= limits.depth(); depth += 1) {
+                Events.Iteration iteration = new Events.Iteration();
+                iteration.begin();
+                long nodes0 = nodes();
+                _rootMoves.clear();
+                int value = findMove(b, depth, true, sense, -INFTY, INFTY);
+                if (iteration.shouldCommit()) {
+                    iteration.depth = depth;
+                    iteration.nodes = nodes() - nodes0;
+                    iteration.bestMove = String.valueOf(_lastFoundMove);
+                    iteration.score = value * sense;
+                    iteration.aborted = _stopped;
+                    iteration.commit();
+                }
+                if (_stopped && best != null) {
+                    break;
+                }
+                stable = _lastFoundMove == best ? stable + 1 : 0;
+                best = _lastFoundMove;
+                score = value * sense;
+                _stats.iterationDone(depth, best, value, nodes(),
+                                     elapsedMillis());
+                List<Line> lines = best == null ? List.of()
+                    : rootLines(b, depth, sense, best, score);
+                if (!_stopped || _lines.isEmpty()) {
+                    _lines = lines;
+                }
+                if (_stopped || best == null
+                    || isWinningScore(value)
+                    || timeToStop(depth, stable)) {
+                    break;
+                }
+            }
+        } finally {
+            stopHelpers();
+        }
+        if (event.shouldCommit()) {
+            event.depth = _stats.depth();
+            event.nodes = nodes();
+            event.bestMove = String.valueOf(best);
+            event.score = score;
+            event.threads = _threads;
+            event.commit();
+        }
+        if (best == null) {
+            List<Move> moves = b.legalMoves(b.turn());
+            best = moves == null ? null : moves.get(0);
+        }
+        List<Move> pv = principalVariation(b, 2);
+        _expectedReply =
+            pv.size() == 2 && pv.get(0) == best ? pv.get(1) : null;
+        return best;
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
+    /** Return the best _limits.multiPV() lines of play from BOARD found
+     *  by the iteration to DEPTH just completed, where FIRST, with score
+     *  SCORE (from the point of view of the side to move), is the best
+     *  move, reporting each to my info listener.  The root moves of the
+     *  lines and their exact scores are those kept by findMove (see
+     *  addRootMove); the rest of each line is read from my table.
+     *  Returns fewer lines if there are fewer moves or the iteration was
+     *  stopped.  SENSE is 1 if white is to move, else -1. */
+    private List<Line> rootLines(Board board, int depth, int sense,
+                                 Move first, int score) {
+        List<Line> lines = new ArrayList<>();
+        if (_rootMoves.isEmpty()) {
+            lines.add(line(board, depth, first, score));
+        }
+        for (int i = 0; i < _rootMoves.size(); i += 1) {
+            lines.add(line(board, depth, _rootMoves.get(i),
+                           _rootScores[i] * sense));
+        }
+        for (int k = 1; k <= lines.size(); k += 1) {
+            reportInfo(depth, lines.subList(0, k));
+        }
+        return List.copyOf(lines);
+    }
+
+    /** Add MOVE, whose value is VALUE, to the best root moves of the
+     *  current iteration if it is among the _rootScores.length best
+     *  found, keeping them sorted best first.  SENSE is 1 if white is to
+     *  move, else -1. */
+    private void addRootMove(Move move, int value, int sense) {
+        int n = _rootMoves.size(), k = n;
+        while (k > 0 && value * sense > _rootScores[k - 1] * sense) {
+            k -= 1;
+        }
+        if (k == _rootScores.length) {
+            return;
+        }
+        if (n == _rootScores.length) {
+            n -= 1;
+            _rootMoves.remove(n);
+        }
+        System.arraycopy(_rootScores, k, _rootScores, k + 1, n - k);
+        _rootScores[k] = value;
+        _rootMoves.add(k, move);
+    }
+
+    /** Return the line from BOARD (which is restored) starting with MOVE
+     *  and continuing with the best play recorded in my table, up to DEPTH
+     *  moves in all, with score SCORE. */
+    private Line line(Board board, int depth, Move move, int score) {
+        board.makeMove(move);
+        List<Move> moves = principalVariation(board, depth - 1);
+        board.undo();
+        moves.add(0, move);
+        return new Line(score, moves);
+    }
+
+    /** A line of play found by a search, with its score. */
+    static class Line {
+        /** A line of MOVES (not empty) scored SCORE from the point of view
+         *  of the side to move at its start. */
+        Line(int score, List<Move> moves) {
+            _score = score;
+            _moves = List.copyOf(moves);
+        }
+
+        /** Return my first move. */
+        Move move() {
+            return _moves.get(0);
+        }
+
+        /** Return my score, from the point of view of the side to move
+         *  at my start. */
+        int score() {
+            return _score;
+        }
+
+        /** Return my moves. */
+        List<Move> moves() {
+            return _moves;
+        }
+
+        /** My score. */
+        private final int _score;
+        /** The moves of the line. */
+        private final List<Move> _moves;
+    }
+
+    /** Return the lines found by the last completed iteration of the
+     *  current or last search, best first: as many as its limits'
+     *  multiPV(), if there are that many moves.  If the search was
+     *  stopped while finding the lines of its first iteration, returns
+     *  those found. */
+    List<Line> lines() {
+        return _lines;
+    }
 
     /** Find a move from position BOARD and return its value, recording
      *  the move found in _lastFoundMove iff SAVEMOVE. The move
      *  should have maximal value or have value > BETA if SENSE==1,
      *  and minimal value or value < ALPHA if SENSE ==-1. Searches up to
      *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
+     *  of the board value and does not set _lastMoveFound.  If SAVEMOVE
+     *  and more than one line is wanted, keeps the best root moves with
+     *  exact values (see addRootMove), raising the bound that a root move
+     *  must beat to the worst of them once there are enough. */
     private int findMove(Board board, int depth, boolean saveMove,
                          int sense, int alpha, int beta) {
 
-        if (depth == 0) {
-            return staticScore(board);
-        } else if (board.winner() == WHITE) {
+        if (board.winner() == WHITE) {
             return WINNING_VALUE;
         } else if (board.winner() == BLACK) {
             return -1 * WINNING_VALUE;
+        } else if (board.moveLimitReached()) {
+            return -1 * sense * WINNING_VALUE;
+        } else if (depth == 0) {
+            _stats.countEval();
+            return staticScore(board);
+        }
+
+        countNode();
+        if (_stopped) {
+            return 0;
+        }
+
+        long key = board.hash();
+        long entry = table().probe(key);
+        _stats.countProbe(entry != 0);
+        Move hashMove = null;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (!saveMove && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                switch (TranspositionTable.bound(entry)) {
+                case TranspositionTable.EXACT:
+                    return score;
+                case TranspositionTable.LOWER:
+                    alpha = Integer.max(alpha, score);
+                    break;
+                default:
+                    beta = Integer.min(beta, score);
+                    break;
+                }
+                if (beta <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        List<Move> moves = board.legalMoves(board.turn());
+        if (moves == null) {
+            return -1 * sense * WINNING_VALUE;
+        }
+        if (hashMove != null && moves.remove(hashMove)) {
+            moves.add(0, hashMove);
         }
 
-        int bestMove = Integer.MIN_VALUE * sense;
+        boolean multiPV = saveMove && _rootScores.length > 1;
+        int alpha0 = alpha, beta0 = beta;
+        int bestValue = -INFTY * sense;
+        Move bestMove = null;
 
-        for (Move m : board.legalMoves(board.turn())) {
+        for (int i = 0; i < moves.size(); i += 1) {
+            Move m = moves.get(i);
             board.makeMove(m);
             int moveValue = findMove(board, depth - 1, false,
                     sense * (-1), alpha, beta);
             board.undo();
-            if (moveValue * sense >= bestMove * sense) {
+            if (_stopped) {
+                return bestValue;
+            }
+            if (multiPV) {
+                addRootMove(m, moveValue, sense);
+                bestMove = _lastFoundMove = _rootMoves.get(0);
+                bestValue = _rootScores[0];
+                if (_rootMoves.size() == _rootScores.length) {
+                    int worst = _rootScores[_rootScores.length - 1];
+                    if (sense == 1) {
+                        alpha = Integer.max(alpha0, worst);
+                    } else {
+                        beta = Integer.min(beta0, worst);
+                    }
+                }
+            } else if (bestMove == null
+                       || moveValue * sense > bestValue * sense) {
                 if (saveMove) {
                     _lastFoundMove = m;
                 }
-                bestMove = moveValue;
+                bestMove = m;
+                bestValue = moveValue;
                 if (sense == 1) {
                     alpha = Integer.max(alpha, moveValue);
                 } else {
                     beta = Integer.min(beta, moveValue);
                 }
                 if (beta <= alpha) {
+                    _stats.countCutoff(i);
                     break;
                 }
             }
         }
-        return bestMove;
+
+        int bound;
+        if (bestValue <= alpha0) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestValue >= beta0) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        table().store(key, depth, bestValue, bound, bestMove);
+        return bestValue;
+    }
+
+    /** Count one interior node, and stop the search if it has exhausted
+     *  its node or time budget. */
+    private void countNode() {
+        _stats.countNode();
+        long nodes = _stats.nodes();
+        if (_limits.nodes() > 0 && nodes >= _limits.nodes()) {
+            _stopped = true;
+        } else if (nodes % CLOCK_INTERVAL == 0
+                   && outOfTime(_maximumMillis)) {
+            _stopped = true;
+        }
+    }
+
+    /** Set the time the current search, of BOARD, aims to take and the
+     *  most it may take, as given by its limits (see
+     *  SearchLimits.targetMillis and SearchLimits.maximumMillis). */
+    private void allotTime(Board board) {
+        _targetMillis = _limits.targetMillis(board);
+        _maximumMillis = _limits.maximumMillis(board);
+        _timed = _limits.timeLeft() > 0;
+        if (_timed) {
+            List<Move> moves = board.legalMoves(board.turn());
+            _singleMove = moves != null && moves.size() == 1;
+        }
+    }
+
+    /** Return true iff the search should not start another iteration
+     *  after one of DEPTH whose best move matched that of the STABLE
+     *  previous iterations.  The next iteration is expected to take
+     *  longer than all before it, so none starts once half the target
+     *  time is used.  In a timed game, an only move needs no search
+     *  beyond the first iteration, and the target is scaled by
+     *  timePercent(DEPTH, STABLE) within the maximum. */
+    private boolean timeToStop(int depth, int stable) {
+        if (!_timed) {
+            return outOfTime(_targetMillis / 2);
+        }
+        long millis = _singleMove ? 0
+            : _targetMillis * timePercent(depth, stable) / 100;
+        return outOfTime(Math.min(_maximumMillis, millis) / 2);
+    }
+
+    /** Return the percentage of its target time that a timed search may
+     *  use after an iteration of DEPTH whose best move matched that of
+     *  the STABLE previous iterations: less for a stable best move, and
+     *  more for one that just changed. */
+    static int timePercent(int depth, int stable) {
+        return stable >= STABLE_ITERATIONS ? STABLE_PERCENT
+            : stable == 0 && depth > 1 ? UNSTABLE_PERCENT : 100;
+    }
+
+    /** Return true iff the current search has a time limit and has used
+     *  MILLIS milliseconds.  Searches that are infinite, pondering, or
+     *  deterministic never run out of time. */
+    private boolean outOfTime(long millis) {
+        if (_targetMillis == 0 || _limits.infinite()
+            || _limits.ponder() || _limits.deterministic()) {
+            return false;
+        }
+        return elapsedMillis() >= millis;
+    }
+
+    /** Return milliseconds since the start of the current search (or since
+     *  the last ponder hit). */
+    long elapsedMillis() {
+        return (System.nanoTime() - _startTime) / 1_000_000;
+    }
+
+    /** Report the last of LINES, found by a search to DEPTH, to my info
+     *  listener, if any.  Its number among the lines is given only when
+     *  more than one was asked for. */
+    private void reportInfo(int depth, List<Line> lines) {
+        if (_info == null) {
+            return;
+        }
+        long nodes = nodes();
+        long millis = elapsedMillis();
+        Line line = lines.get(lines.size() - 1);
+        StringBuilder pv = new StringBuilder();
+        for (Move m : line.moves()) {
+            pv.append(' ').append(m);
+        }
+        String multiPV = _limits.multiPV() == 1 ? ""
+            : " multipv " + lines.size();
+        _info.accept(String.format("info depth %d%s score %d nodes %d"
+                                   + " nps %d time %d pv%s",
+                                   depth, multiPV, line.score(), nodes,
+                                   nodes * 1000 / Math.max(1, millis),
+                                   millis, pv));
+    }
+
+    /** Return the line of best play from BOARD recorded in my table, up to
+     *  DEPTH moves long.  BOARD is restored before returning. */
+    List<Move> principalVariation(Board board, int depth) {
+        List<Move> line = new ArrayList<>();
+        while (line.size() < depth && board.winner() == null
+               && !board.moveLimitReached()) {
+            Move m = TranspositionTable.move(table().probe(board.hash()));
+            if (m == null || !board.isLegal(m.from())
+                || !board.isLegal(m)) {
+                break;
+            }
+            line.add(m);
+            board.makeMove(m);
+        }
+        for (int i = 0; i < line.size(); i += 1) {
+            board.undo();
+        }
+        return line;
+    }
+
+    /** Start _threads - 1 helper searches of BOARD that share my table and
+     *  run until stopHelpers. */
+    private void startHelpers(Board board) {
+        ExecutorService pool =
+            _limits.ponder() ? PONDERERS : backgroundPool();
+        _helpers.clear();
+        for (int i = 1; i < _threads; i += 1) {
+            AI helper = new AI();
+            helper._table = table();
+            helper._evaluation = _evaluation;
+            _helpers.add(helper);
+            Board b = new Board(board);
+            int firstDepth = 1 + i % 2;
+            pool.execute(() -> helper.help(b, firstDepth));
+        }
     }
 
+    /** Return the pool on which my helper searches run, except those of
+     *  ponder searches, which run on PONDERERS: my controller's search
+     *  pool, if it has one, so that they count against its bound on
+     *  threads, and otherwise HELPERS.  A helper
+     *  that waits in a busy pool until its search has been stopped ends
+     *  at once. */
+    private ExecutorService backgroundPool() {
+        ExecutorService pool =
+            _controller == null ? null : _controller.searchPool();
+        return pool == null ? HELPERS : pool;
+    }
 
+    /** Stop all helper searches started by startHelpers. */
+    private void stopHelpers() {
+        for (AI helper : _helpers) {
+            helper.stop();
+        }
+    }
 
-    /** Return a heuristically determined maximum search depth
-     *  based on characteristics of BOARD. */
-    private static int maxDepth(Board board) {
-        return 2;
+    /** Search BOARD by iterative deepening from FIRSTDEPTH on, filling
+     *  the shared table, until stopped. */
+    private void help(Board board, int firstDepth) {
+        _limits = new SearchLimits().setInfinite(true);
+        int sense = board.turn() == WHITE ? 1 : -1;
+        for (int depth = firstDepth;
+             depth <= SearchLimits.MAX_DEPTH && !_stopped; depth += 1) {
+            findMove(board, depth, false, sense, -INFTY, INFTY);
+        }
+    }
+
+    /** End the current search as soon as possible.  The search returns
+     *  the best move from its last completed iteration. */
+    @Override
+    void stop() {
+        _stopped = true;
+    }
+
+    @Override
+    void reset() {
+        _stopped = false;
+    }
+
+    /** Clears my table, unless it is persistent. */
+    @Override
+    void newGame() {
+        super.newGame();
+        reset();
+        if (!table().isPersistent()) {
+            table().clear();
+        }
+    }
+
+    /** Convert the current pondering search into a normal one, whose time
+     *  budget starts now. */
+    void ponderHit() {
+        _startTime = System.nanoTime();
+        if (_limits != null) {
+            _limits.setPonder(false);
+        }
+    }
+
+    /** Return the number of nodes searched so far in the current or last
+     *  search, including those of helper threads. */
+    long nodes() {
+        long total = _stats.nodes();
+        for (AI helper : _helpers) {
+            total += helper._stats.nodes();
+        }
+        return total;
+    }
+
+    @Override
+    SearchStats statistics() {
+        SearchStats total = _stats.copy();
+        for (AI helper : _helpers) {
+            total.add(helper._stats);
+        }
+        return total;
+    }
+
+    /** Return my transposition table, creating it as my settings
+     *  direct if needed. */
+    TranspositionTable table() {
+        if (_table == null) {
+            _table = config().newTable();
+        }
+        return _table;
+    }
+
+    /** Use TABLE as my transposition table. */
+    void setTable(TranspositionTable table) {
+        _table = table;
+    }
+
+    /** Evaluate positions with EVALUATION. */
+    void setEvaluation(Evaluation evaluation) {
+        _evaluation = evaluation;
+    }
+
+    /** Search with THREADS threads (at least 1). */
+    void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Send a line describing each completed iteration to INFO (or to
+     *  no one if INFO is null). */
+    void setInfoListener(Consumer<String> info) {
+        _info = info;
+    }
+
+    /** Return true iff SCORE indicates a win for one side or the
+     *  other. */
+    static boolean isWinningScore(int score) {
+        return Math.abs(score) >= WILL_WIN_VALUE;
     }
 
     /** Return a heuristic value for BOARD. */
     private int staticScore(Board board) {
-        int whiteCount = board.pieceLocations(WHITE).size();
-        int blackCount = board.pieceLocations(BLACK).size();
-        int pieceCount = whiteCount - blackCount;
-        return pieceCount;
+        return _evaluation.score(board);
     }
+
+    /** The move found by the last call to one of the ...FindMove methods
+     *  below. */
+    private Move _lastFoundMove;
+    /** The best root moves found so far by the current iteration, best
+     *  first, when it is finding more than one line. */
+    private final List<Move> _rootMoves = new ArrayList<>();
+    /** _rootScores[k] is the value of _rootMoves.get(k); its length is
+     *  the number of lines the current search finds. */
+    private int[] _rootScores = new int[1];
+    /** The lines found by the last completed iteration. */
+    private List<Line> _lines = List.of();
+
+    /** Limits on the current search. */
+    private SearchLimits _limits;
+    /** Time in milliseconds that the current search aims to take and
+     *  the most it may take, or 0 if it has no time limit. */
+    private long _targetMillis, _maximumMillis;
+    /** True iff the current search is part of a timed game. */
+    private boolean _timed;
+    /** True iff the current search is of a position with only one legal
+     *  move. */
+    private boolean _singleMove;
+    /** Value of System.nanoTime() when the current search (or its last
+     *  ponder hit) began. */
+    private volatile long _startTime;
+    /** Counters for the current or last search by this thread. */
+    private final SearchStats _stats = new SearchStats();
+    /** True when the current search should end. */
+    private volatile boolean _stopped;
+    /** Transposition table, shared with my helpers. */
+    private TranspositionTable _table;
+    /** Static evaluation of positions. */
+    private Evaluation _evaluation = Evaluation.standard();
+    /** Number of threads searching. */
+    private int _threads = 1;
+    /** Helper searches of the current search. */
+    private final List<AI> _helpers = new ArrayList<>();
+    /** Receives info lines, or null. */
+    private Consumer<String> _info;
+
+    /** The opponent's reply expected after the move found by my last
+     *  search, or null. */
+    private Move _expectedReply;
+    /** The ponder search in progress, or null. */
+    private Future<Move> _pondering;
+    /** Limits of the current ponder search. */
+    private SearchLimits _ponderLimits;
+    /** Hashes of the position in which pondering started, and of the
+     *  position being pondered (after the expected reply). */
+    private long _ponderBase, _ponderHash;
 }
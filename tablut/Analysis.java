@@ -0,0 +1,281 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Utils.*;
+
+/** Batch analysis of test positions.  Each line of an input file holds a
+ *  position in Board.notation() form, followed by operations separated by
+ *  semicolons, in the manner of EPD:
+ *
+ *      3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 B 0; bm h5-6; id a
+ *
+ *  where "bm M1 M2 ..." lists acceptable best moves, "score N" asks for a
+ *  score (from white's point of view) of at least N if N > 0, at most N
+ *  if N < 0, or exactly 0 if N is 0, and "id NAME" names the position
+ *  (quotes around NAME are optional).
+ *  Blank lines and lines starting with "#" are ignored.  Each position is
+ *  searched by an AI under the given engine settings on a work-stealing
+ *  pool, each worker thread with its own Board and AI, and one CSV line
+ *  of results is written per position as it finishes.  A position is
+ *  solved at the first depth from which every completed iteration
+ *  satisfies its operations; the time and nodes used up to that depth
+ *  are its time to solution.
+ *  @author Andrew Kaplan
+ */
+public class Analysis {
+
+    /** Header line of the CSV output. */
+    static final String CSV_HEADER =
+        "index,id,move,score,depth,nodes,millis,solved,solve_depth,"
+        + "solve_nodes,solve_millis";
+
+    /** The main program.  See the usage message for ARGS. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--engine={0,1} --threads={0,1}"
+                            + " --output={0,1} --={1,}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        try {
+            EngineConfig config = options.contains("--engine")
+                ? EngineConfig.parse(options.getFirst("--engine"))
+                : new EngineConfig();
+            List<Problem> problems = new ArrayList<>();
+            for (String name : options.get("--")) {
+                problems.addAll(read(Path.of(name)));
+            }
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            PrintStream out = System.out;
+            if (options.contains("--output")) {
+                out = new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream(options.getFirst("--output"))));
+            }
+            new Analysis(config, threads).run(problems, out);
+            out.close();
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java tablut.Analysis [--engine=SETTINGS]"
+                           + " [--threads=N] [--output=CSV] FILE...");
+        System.exit(1);
+    }
+
+    /** A test position with its expected results. */
+    static class Problem {
+        /** A problem described by LINE, which is number INDEX in its
+         *  file (counting from 1), in the form described for
+         *  Analysis. */
+        Problem(String line, int index) {
+            String[] parts = line.split(";");
+            _index = index;
+            _id = String.valueOf(index);
+            _notation = parts[0].trim();
+            Board.fromNotation(_notation);
+            for (int i = 1; i < parts.length; i += 1) {
+                String[] words = parts[i].trim().split("\\s+");
+                switch (words[0].toLowerCase()) {
+                case "":
+                    break;
+                case "bm":
+                    for (int k = 1; k < words.length; k += 1) {
+                        Move move = Move.mv(words[k].toLowerCase());
+                        if (move == null) {
+                            throw error("bad move in line %d: %s", index,
+                                        words[k]);
+                        }
+                        _bestMoves.add(move);
+                    }
+                    break;
+                case "score":
+                    try {
+                        _score = Integer.valueOf(words[1]);
+                    } catch (NumberFormatException
+                             | IndexOutOfBoundsException excp) {
+                        throw error("bad score in line %d", index);
+                    }
+                    break;
+                case "id":
+                    _id = parts[i].trim().substring(2).trim();
+                    if (_id.length() > 1 && _id.startsWith("\"")
+                        && _id.endsWith("\"")) {
+                        _id = _id.substring(1, _id.length() - 1);
+                    }
+                    break;
+                default:
+                    throw error("unknown operation in line %d: %s", index,
+                                words[0]);
+                }
+            }
+        }
+
+        /** Return my name. */
+        String id() {
+            return _id;
+        }
+
+        /** Return true iff MOVE with score SCORE (from white's point of
+         *  view) satisfies my operations. */
+        boolean solvedBy(Move move, int score) {
+            if (!_bestMoves.isEmpty() && !_bestMoves.contains(move)) {
+                return false;
+            } else if (_score == null) {
+                return true;
+            } else if (_score > 0) {
+                return score >= _score;
+            } else if (_score < 0) {
+                return score <= _score;
+            } else {
+                return score == 0;
+            }
+        }
+
+        /** Line number of the problem. */
+        private final int _index;
+        /** Name of the problem. */
+        private String _id;
+        /** The position. */
+        private final String _notation;
+        /** Acceptable best moves, if any. */
+        private final Set<Move> _bestMoves = new HashSet<>();
+        /** Required score, or null if none. */
+        private Integer _score;
+    }
+
+    /** Return the problems in the file FILE. */
+    static List<Problem> read(Path file) throws IOException {
+        List<Problem> result = new ArrayList<>();
+        int index = 0;
+        for (String line : Files.readAllLines(file)) {
+            index += 1;
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                result.add(new Problem(line, index));
+            }
+        }
+        return result;
+    }
+
+    /** An analysis using engines with settings CONFIG on THREADS worker
+     *  threads. */
+    Analysis(EngineConfig config, int threads) {
+        _config = config;
+        _threads = Math.max(1, threads);
+        _engines =
+            ThreadLocal.withInitial(() -> config.newPlayer(null, null));
+        _boards = ThreadLocal.withInitial(Board::new);
+    }
+
+    /** Analyze PROBLEMS, writing CSV lines to OUT as they are finished and
+     *  a summary to the standard error.  Return the number solved. */
+    int run(List<Problem> problems, PrintStream out) {
+        System.err.printf("engine: %s%n", _config);
+        out.println(CSV_HEADER);
+        ExecutorService pool = Executors.newWorkStealingPool(_threads);
+        ExecutorCompletionService<String> results =
+            new ExecutorCompletionService<>(pool);
+        for (Problem problem : problems) {
+            results.submit(() -> analyze(problem));
+        }
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < problems.size(); i += 1) {
+                out.println(results.take().get());
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        double secs = (System.nanoTime() - start) / 1e9;
+        synchronized (this) {
+            System.err.printf("solved %d of %d (%.1f%%); mean time to"
+                              + " solution %.1f ms; %d nodes in %.2f s%n",
+                              _solved, problems.size(),
+                              100.0 * _solved / Math.max(1, problems.size()),
+                              (double) _solveMillis / Math.max(1, _solved),
+                              _nodes, secs);
+            return _solved;
+        }
+    }
+
+    /** Search the position of PROBLEM and return its CSV line. */
+    private String analyze(Problem problem) {
+        Board board = _boards.get();
+        AutoPlayer ai = _engines.get();
+        board.setPosition(problem._notation);
+        ai.newGame();
+        Move move = ai.search(board, _config.limits());
+        SearchStats stats = ai.statistics();
+        int solveDepth = 0;
+        for (int d = stats.depth(); d >= 1; d -= 1) {
+            if (!problem.solvedBy(stats.iterationMove(d),
+                                  stats.iterationScore(d))) {
+                break;
+            }
+            solveDepth = d;
+        }
+        synchronized (this) {
+            _nodes += stats.nodes();
+            if (solveDepth > 0) {
+                _solved += 1;
+                _solveMillis += stats.iterationMillis(solveDepth);
+            }
+        }
+        return String.format("%d,%s,%s,%d,%d,%d,%d,%d,%d,%d,%d",
+                             problem._index, csv(problem._id), move,
+                             stats.score(), stats.depth(), stats.nodes(),
+                             stats.millis(), solveDepth > 0 ? 1 : 0,
+                             solveDepth, stats.iterationNodes(solveDepth),
+                             stats.iterationMillis(solveDepth));
+    }
+
+    /** Return TEXT quoted as a CSV field, if needed. */
+    private static String csv(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    /** Settings of the engines. */
+    private final EngineConfig _config;
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Per-worker searchers. */
+    private final ThreadLocal<AutoPlayer> _engines;
+    /** Per-worker boards. */
+    private final ThreadLocal<Board> _boards;
+    /** Problems solved so far. */
+    private int _solved;
+    /** Total time to solution of the problems solved, in milliseconds. */
+    private long _solveMillis;
+    /** Total nodes searched. */
+    private long _nodes;
+}
@@ -0,0 +1,93 @@
+package tablut;
+
+/** A Player that searches for its moves, under settings given by an
+ *  EngineConfig: the number of threads, the memory to use, and the limits
+ *  on each move's search.  If the settings give a time budget for the
+ *  whole game, I keep a clock of the time my moves have taken since
+ *  newGame and search with the time that remains.  Besides playing
+ *  under a Controller, an AutoPlayer may search positions directly, as
+ *  the headless tools do.
+ *  @author Andrew Kaplan
+ */
+abstract class AutoPlayer extends Player {
+
+    /** An AutoPlayer with default settings playing PIECE under control of
+     *  CONTROLLER (either of which may be null for a template or a
+     *  headless searcher). */
+    AutoPlayer(Piece piece, Controller controller) {
+        super(piece, controller);
+    }
+
+    @Override
+    boolean isManual() {
+        return false;
+    }
+
+    @Override
+    String myMove() {
+        long start = System.nanoTime();
+        String move = findMove().toString();
+        long nanos = System.nanoTime() - start;
+        charge(nanos / 1_000_000);
+        _controller.output().println("* " + move);
+        SearchStats stats = statistics();
+        _controller.reportStats(myPiece(), stats);
+        _controller.recordLatency(board(), nanos, stats);
+        return move;
+    }
+
+    /** Return a move for me from the current position, assuming there
+     *  is a move. */
+    abstract Move findMove();
+
+    /** Return the best move found by searching BOARD (which is not
+     *  modified) within LIMITS, or null if the side to move has no legal
+     *  move.  Another thread may end the search early with stop(). */
+    abstract Move search(Board board, SearchLimits limits);
+
+    /** End the current search as soon as possible. */
+    abstract void stop();
+
+    /** Allow a subsequent search to run (after stop). */
+    abstract void reset();
+
+    /** Prepare to search positions of a game unrelated to the last one,
+     *  starting my game clock afresh.  Subclasses that keep other state
+     *  between moves clear it and call this. */
+    void newGame() {
+        _clockMillis = 0;
+    }
+
+    /** Return the limits on my next search in the current game: those of
+     *  my settings, plus the time left on my game clock if my settings
+     *  give a budget for the game. */
+    SearchLimits limits() {
+        SearchLimits result = _config.limits();
+        if (_config.gameTime() > 0) {
+            result.setTimeLeft(Math.max(1, _config.gameTime()
+                                        - _clockMillis));
+        }
+        return result;
+    }
+
+    /** Charge MILLIS milliseconds of thinking to my game clock. */
+    void charge(long millis) {
+        _clockMillis += millis;
+    }
+
+    /** Adopt the thread count, memory, and limits of CONFIG.  Subclasses
+     *  apply the settings they use and call this. */
+    void configure(EngineConfig config) {
+        _config = config;
+    }
+
+    /** Return my settings. */
+    EngineConfig config() {
+        return _config;
+    }
+
+    /** My settings. */
+    private EngineConfig _config = new EngineConfig();
+    /** Milliseconds my moves have taken since the start of the game. */
+    private long _clockMillis;
+}
@@ -0,0 +1,182 @@
+package tablut;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static tablut.Evaluation.*;
+import static tablut.Square.*;
+
+/** Evaluation of many positions at once, for offline work such as
+ *  labelling and tuning, where positions do not depend on one another.
+ *  Positions are packed one after another into a byte array, STRIDE
+ *  bytes apiece, each holding a copy of the squares of a Board in Board's
+ *  own encoding (Piece ordinals indexed by Square.index()) followed by
+ *  EMPTY padding.  When the program runs with the incubating Vector API
+ *  (--add-modules jdk.incubator.vector), pieces are counted and scores
+ *  summed in SIMD lanes by VectorBatch.  Otherwise, the scalar code here
+ *  counts pieces eight squares at a time, reading each group of squares
+ *  as one long and counting the bits that mark white and black pieces,
+ *  so that the material features of a position cost STRIDE / 8 word
+ *  operations rather than a lookup per square, and computes scores
+ *  feature by feature over the whole batch, in loops that the JIT
+ *  compiler can vectorize.  The features and scores agree with those of
+ *  Evaluation.
+ *  @author Andrew Kaplan
+ */
+class BatchEvaluation {
+
+    /** Bytes occupied by one packed position: NUM_SQUARES rounded up to
+     *  a whole number of longs. */
+    static final int STRIDE = (NUM_SQUARES + Long.BYTES - 1)
+        / Long.BYTES * Long.BYTES;
+
+    /** True iff the Vector API is available to the running program, so
+     *  that VectorBatch, which cannot be loaded otherwise, may be
+     *  used. */
+    static final boolean VECTORIZED =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** Low bit of each byte of a long. */
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    /** Encodings of a black piece and of the king. */
+    static final byte BLACK_CODE = (byte) Piece.BLACK.ordinal(),
+        KING_CODE = (byte) Piece.KING.ordinal();
+
+    /** Differences in square index of one step north, east, south, and
+     *  west (the directions of Square.rookMove). */
+    private static final int[] STEPS = { BOARD_SIZE, 1, -BOARD_SIZE, -1 };
+
+    /** Reads longs from byte arrays. */
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class,
+                                             ByteOrder.LITTLE_ENDIAN);
+
+    static {
+        assert Piece.EMPTY.ordinal() == 0 && Piece.WHITE.ordinal() == 1
+            && Piece.BLACK.ordinal() == 2 && Piece.KING.ordinal() == 3
+            : "piece encoding assumed below";
+    }
+
+    /** Return an array large enough to hold COUNT packed positions. */
+    static byte[] newBatch(int count) {
+        return new byte[count * STRIDE];
+    }
+
+    /** Pack the squares of BOARD into BATCH as position number INDEX. */
+    static void pack(Board board, byte[] batch, int index) {
+        board.pack(batch, index * STRIDE);
+        Arrays.fill(batch, index * STRIDE + NUM_SQUARES,
+                    (index + 1) * STRIDE, (byte) 0);
+    }
+
+    /** Set FEATURES[k][i] to feature k of position number i in BATCH,
+     *  for each feature k and each i < COUNT. */
+    static void features(byte[] batch, int count, int[][] features) {
+        if (VECTORIZED) {
+            VectorBatch.features(batch, count, features);
+        } else {
+            scalarFeatures(batch, count, features);
+        }
+    }
+
+    /** As for features, without SIMD lanes. */
+    static void scalarFeatures(byte[] batch, int count, int[][] features) {
+        int[] whites = features[0], blacks = features[1];
+        for (int i = 0; i < count; i += 1) {
+            int base = i * STRIDE;
+            int white, black;
+            white = black = 0;
+            int king = -1;
+            for (int b = base; b < base + STRIDE; b += Long.BYTES) {
+                long squares = (long) LONGS.get(batch, b);
+                long high = squares >>> 1;
+                white += Long.bitCount(squares & LOW_BITS);
+                black += Long.bitCount(high & ~squares & LOW_BITS);
+                long kings = squares & high & LOW_BITS;
+                if (kings != 0) {
+                    king = b - base + Long.numberOfTrailingZeros(kings) / 8;
+                }
+            }
+            whites[i] = white;
+            blacks[i] = black;
+            kingFeatures(batch, base, king, features, i);
+        }
+    }
+
+    /** Set the king features and the bias of position number I in
+     *  FEATURES from the position at offset BASE in BATCH, whose king is
+     *  on the square with index KING (or none if it is negative). */
+    static void kingFeatures(byte[] batch, int base, int king,
+                                     int[][] features, int i) {
+        features[5][i] = 1;
+        if (king < 0) {
+            features[2][i] = features[3][i] = features[4][i] = 0;
+            return;
+        }
+        int last = BOARD_SIZE - 1;
+        int col = king % BOARD_SIZE, row = king / BOARD_SIZE;
+        features[2][i] = Math.min(Math.min(col, last - col),
+                                  Math.min(row, last - row));
+        int open, attackers;
+        open = attackers = 0;
+        int[] lengths = { last - row, last - col, row, col };
+        for (int dir = 0; dir < 4; dir += 1) {
+            int n = lengths[dir];
+            if (n == 0) {
+                continue;
+            }
+            int sq = base + king + STEPS[dir];
+            if (batch[sq] == BLACK_CODE) {
+                attackers += 1;
+            }
+            int k;
+            for (k = 0; k < n && batch[sq] == 0; k += 1) {
+                sq += STEPS[dir];
+            }
+            if (k == n) {
+                open += 1;
+            }
+        }
+        features[3][i] = open;
+        features[4][i] = attackers;
+    }
+
+    /** Set SCORES[i] to the value under EVALUATION, from white's point of
+     *  view, of the position whose features are FEATURES[k][i], for each
+     *  i < COUNT. */
+    static void scores(Evaluation evaluation, int[][] features, int count,
+                       int[] scores) {
+        if (VECTORIZED) {
+            VectorBatch.scores(evaluation.weights(), features, count, scores);
+        } else {
+            scalarScores(evaluation.weights(), features, count, scores);
+        }
+    }
+
+    /** As for scores, without SIMD lanes, using WEIGHTS, the weights of
+     *  the evaluation. */
+    static void scalarScores(int[] weights, int[][] features, int count,
+                             int[] scores) {
+        Arrays.fill(scores, 0, count, 0);
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            int w = weights[k];
+            int[] column = features[k];
+            for (int i = 0; i < count; i += 1) {
+                scores[i] += w * column[i];
+            }
+        }
+    }
+
+    /** Return the values under EVALUATION, from white's point of view, of
+     *  the first COUNT positions in BATCH. */
+    static int[] scores(Evaluation evaluation, byte[] batch, int count) {
+        int[][] features = new int[NUM_FEATURES][count];
+        features(batch, count, features);
+        int[] result = new int[count];
+        scores(evaluation, features, count, result);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package tablut;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/** A fixed benchmark of the alpha-beta search: deterministic searches of
+ *  a built-in set of positions to a fixed depth, each with an empty
+ *  table of fixed size and the default evaluation.  The total number of
+ *  nodes searched is a signature of the search's behavior, which changes
+ *  only when the search or evaluation does, so a change meant only to
+ *  speed things up must leave it alone.  The nodes searched per second
+ *  measure the speed.
+ *  @author Andrew Kaplan
+ */
+class Bench {
+
+    /** Depth searched unless another is given. */
+    static final int DEFAULT_DEPTH = 4;
+
+    /** Size of the table used by each search, in megabytes. */
+    static final int TABLE_MEGABYTES = 16;
+
+    /** The positions searched, in position notation (see
+     *  Board.notation), from random games of various lengths, none of
+     *  them decided within the default depth. */
+    static final List<String> POSITIONS = List.of(
+        "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 B 0",
+        "3BBB3/3WB4/4W4/B3W3B/BBW1KWWBB/B3W1B2/4WB3/3BB4/4B4 W 5",
+        "3BBB3/4B4/4W3W/B6BB/B1WWK1WB1/B3W3B/4W4/1B2BW3/3BBB3 B 8",
+        "1B2BB2B/4B1W2/2W1W4/B4W3/B1BWK1WBB/B3WB3/4W4/4B2B1/3BB4 W 11",
+        "3BBB3/1B2BB3/8W/4W3B/BBW1KWW1B/B1W1W3B/4W4/1B2B4/4BB3 B 14",
+        "1B3B3/3BB4/B3W1W2/8B/2WK1WWBB/B1B1W1W1B/1B2W4/9/3BB1B1B W 17",
+        "4BB1B1/3B5/1B4W2/BW5BB/BW1WKWW1B/3W4B/5B3/3BB4/3BB2W1 B 20",
+        "B2BB4/4B4/4WB3/1W5BB/B1WWKWW1B/1B2B2W1/1BB1W4/8B/4BB3 W 23",
+        "3BBBB2/1B1B1WW2/4W4/B8/3WK2B1/B1W5B/1W3WW2/1B3B3/1B2BB2B B 26",
+        "4B4/B4B2W/8W/B3W3B/B1W1K2B1/W7W/B1BW2B2/4BW2B/B2BBB3 W 29",
+        "1W2B1B2/2WB3B1/3W5/B1W5B/BB2KW1BB/6B2/1BWWB4/2B2B3/3W1B3 B 32",
+        "2W1B4/4BB3/7W1/BB4WB1/B2BK1W1B/BW5B1/4WW3/4B4/3BBW3 W 35");
+
+    /** Search each of POSITIONS to DEPTH, writing a line for each and a
+     *  summary line to OUT, and return the total number of nodes
+     *  searched. */
+    static long run(int depth, PrintStream out) {
+        AI ai = new AI();
+        ai.setTable(new TranspositionTable(TABLE_MEGABYTES));
+        ai.setEvaluation(new Evaluation());
+        Board board = new Board();
+        long nodes, nanos;
+        nodes = nanos = 0;
+        for (int i = 0; i < POSITIONS.size(); i += 1) {
+            board.setPosition(POSITIONS.get(i));
+            ai.newGame();
+            long start = System.nanoTime();
+            Move move = ai.search(board, new SearchLimits().setDepth(depth)
+                                  .setDeterministic(true));
+            nanos += System.nanoTime() - start;
+            SearchStats stats = ai.statistics();
+            nodes += stats.nodes();
+            out.printf("bench %d nodes %d move %s score %d%n", i + 1,
+                       stats.nodes(), move, stats.score());
+        }
+        long millis = nanos / 1_000_000;
+        out.printf("bench depth %d positions %d nodes %d time %d nps %d%n",
+                   depth, POSITIONS.size(), nodes, millis,
+                   nodes * 1000 / Math.max(1, millis));
+        return nodes;
+    }
+}
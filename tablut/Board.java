@@ -1,14 +1,15 @@
 package tablut;
 
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Formatter;
+import java.util.Random;
 
 import static tablut.Move.ROOK_MOVES;
 import static tablut.Piece.*;
 import static tablut.Square.*;
+import static tablut.Utils.*;
 
 
 /** The state of a Tablut Game.
@@ -26,6 +27,44 @@ class Board {
         WTHRONE = sq(3, 4),
         ETHRONE = sq(5, 4);
 
+    /** The castle squares: the throne and the four squares around it. */
+    static final Square[] CASTLE = {
+        THRONE, NTHRONE, STHRONE, WTHRONE, ETHRONE
+    };
+
+    /** IN_CASTLE[i] is true iff the square with index i is in CASTLE.
+     *  Shared by all Boards. */
+    private static final boolean[] IN_CASTLE = new boolean[NUM_SQUARES];
+
+    static {
+        for (Square sq : CASTLE) {
+            IN_CASTLE[sq.index()] = true;
+        }
+    }
+
+    /** The most legal moves any position can have: each of 16 pieces
+     *  moving to any of the 16 other squares in its row and column. */
+    static final int MAX_MOVES = 16 * 16;
+
+    /** Pieces indexed by ordinal, as stored in the board array. */
+    private static final Piece[] PIECES = Piece.values();
+
+    /** Initial capacity of the move history. */
+    private static final int HISTORY_CAPACITY = 32;
+
+    /** Initial capacity of the repetition window, a power of 2. */
+    private static final int WINDOW_CAPACITY = 32;
+
+    /** A packed move record holds the index of the from square in its
+     *  low SQUARE_BITS bits, the index of the to square in the next
+     *  SQUARE_BITS bits, and then, for each direction in turn, the
+     *  ordinal of the piece captured in that direction (EMPTY, which has
+     *  ordinal 0, for none) in PIECE_BITS bits. */
+    private static final int SQUARE_BITS = 7, PIECE_BITS = 2,
+        SQUARE_MASK = (1 << SQUARE_BITS) - 1,
+        PIECE_MASK = (1 << PIECE_BITS) - 1,
+        CAPTURES_SHIFT = 2 * SQUARE_BITS;
+
     /** Initial positions of attackers. */
     static final Square[] INITIAL_ATTACKERS = {
         sq(0, 3), sq(0, 4), sq(0, 5), sq(1, 4),
@@ -40,6 +79,25 @@ class Board {
         sq(4, 6), sq(4, 2), sq(2, 4), sq(6, 4)
     };
 
+    /** ZOBRIST[p][i] is the random key for Piece with ordinal p on the
+     *  square with index i.  Keys for EMPTY are zero.  Seeded, so that
+     *  hashes are stable across runs. */
+    static final long[][] ZOBRIST =
+        new long[Piece.values().length][NUM_SQUARES];
+
+    /** Key xored into the hash when black is to move. */
+    static final long BLACK_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x7AB1L);
+        for (Piece p : Piece.values()) {
+            for (int i = 0; i < NUM_SQUARES; i += 1) {
+                ZOBRIST[p.ordinal()][i] = p == EMPTY ? 0 : keys.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = keys.nextLong();
+    }
+
     /** Initializes a game board with SIZE squares on a side in the
      *  initial position. */
     Board() {
@@ -63,27 +121,15 @@ class Board {
         this._moveLimit = model._moveLimit;
         this._moveCount = model.moveCount();
         this._repeated = model._repeated;
-        this._castle = model._castle;
-
-
-        Piece [][] copy = new Piece[SIZE][SIZE];
-
-        for (int i = 0; i < SIZE; i += 1) {
-            for (int j = 0; j < SIZE; j += 1) {
-                copy[i][j] = _board[i][j];
-            }
-        }
-
-        this._board = copy;
-
-        this._boardStrings = new HashSet<>();
-        this._boardStrings.addAll(model._boardStrings);
-
-        this._turnNodes = new Stack<>();
-        this._turnNodes.addAll(model._turnNodes);
-
-        this._gameMoves = new Stack<>();
-        this._gameMoves.addAll(model._gameMoves);
+        this._undoLimit = model._undoLimit;
+        this._hash = model._hash;
+        System.arraycopy(model._board, 0, _board, 0, NUM_SQUARES);
+        int n = Math.max(HISTORY_CAPACITY,
+                         _moveCount - model._setUpCount + 1);
+        this._moves = Arrays.copyOf(model._moves, n);
+        this._window = model._window.clone();
+        this._windowStart = model._windowStart;
+        this._setUpCount = model._setUpCount;
     }
 
     /** Clears the board to the initial position. */
@@ -93,35 +139,27 @@ class Board {
         _moveLimit = Integer.MAX_VALUE / 2;
         _moveCount = 0;
         _repeated = false;
-        _board = new Piece[SIZE][SIZE];
-        _castle = new HashSet<>();
-        _boardStrings = new HashSet<>();
-        _turnNodes = new Stack<>();
-        _gameMoves = new Stack<>();
-
-        for (int i = 0; i < SIZE; i += 1) {
-            for (int j = 0; j < SIZE; j += 1) {
-                _board[j][i] = EMPTY;
-            }
-        }
+        _undoLimit = 0;
+        _board = new byte[NUM_SQUARES];
+        _scratch = new byte[NUM_SQUARES];
+        _moves = new int[HISTORY_CAPACITY];
+        _window = new long[WINDOW_CAPACITY];
+        _windowStart = _setUpCount = 0;
+        _hash = BLACK_TO_MOVE;
+
         for (Square sq: INITIAL_ATTACKERS) {
             put(BLACK, sq);
         }
         for (Square sq: INITIAL_DEFENDERS) {
             put(WHITE, sq);
         }
-        castle();
         put(KING, THRONE);
-        _boardStrings.add(encodedBoard());
+        _window[0] = _hash;
     }
 
-    /** Init _castle HashSet for easy access. */
-    void castle() {
-        _castle.add(THRONE);
-        _castle.add(NTHRONE);
-        _castle.add(STHRONE);
-        _castle.add(ETHRONE);
-        _castle.add(WTHRONE);
+    /** Return true iff SQ is one of the CASTLE squares. */
+    static boolean isCastle(Square sq) {
+        return IN_CASTLE[sq.index()];
     }
 
     /** Set the move limit to LIM.  It is an error if 2*LIM <= moveCount(). */
@@ -129,6 +167,11 @@ class Board {
         _moveLimit = lim;
     }
 
+    /** Return the move limit. */
+    int moveLimit() {
+        return _moveLimit;
+    }
+
     /** Return a Piece representing whose move it is (WHITE or BLACK). */
     Piece turn() {
         return _turn;
@@ -145,16 +188,77 @@ class Board {
         return _repeated;
     }
 
-    /** Record current position and set winner() next mover if the current
-     *  position is a repeat. */
+    /** Set winner() to the next mover if the current position repeats
+     *  an earlier one.  Positions are compared by hash, and only those
+     *  since the last capture can match, since a capture cannot be
+     *  reversed. */
     private void checkRepeated() {
-        String currentBoard = encodedBoard();
-        if (_boardStrings.contains(currentBoard)) {
-            _winner = _turn;
-        } else {
-            _boardStrings.add(currentBoard);
+        int mask = _window.length - 1;
+        for (int i = _moveCount - 2; i >= _windowStart; i -= 2) {
+            if (_window[i & mask] == _hash) {
+                _winner = _turn;
+                _repeated = true;
+                return;
+            }
         }
+    }
 
+    /** Record the hash of the current position in the repetition window,
+     *  first starting a new window if the last move captured, and
+     *  doubling the window's capacity if it is full. */
+    private void recordPosition() {
+        if (moveRecord(_moveCount) >>> CAPTURES_SHIFT != 0) {
+            _windowStart = _moveCount;
+        }
+        if (_moveCount - _windowStart >= _window.length) {
+            long[] window = new long[2 * _window.length];
+            for (int k = _windowStart; k < _moveCount; k += 1) {
+                window[k & (window.length - 1)] =
+                    _window[k & (_window.length - 1)];
+            }
+            _window = window;
+        }
+        _window[_moveCount & (_window.length - 1)] = _hash;
+    }
+
+    /** Restore the repetition window after undoing a capture: it starts
+     *  again at the capture before (or the position set up), and the
+     *  hashes of its positions, which later ones may have overwritten,
+     *  are recomputed by retracing its moves, none of which captured,
+     *  from the current position, on a copy of it in _scratch. */
+    private void restoreWindow() {
+        _windowStart = _setUpCount;
+        for (int k = _moveCount; k > _setUpCount; k -= 1) {
+            if (moveRecord(k) >>> CAPTURES_SHIFT != 0) {
+                _windowStart = k;
+                break;
+            }
+        }
+        while (_moveCount - _windowStart >= _window.length) {
+            _window = new long[2 * _window.length];
+        }
+        int mask = _window.length - 1;
+        byte[] board = _scratch;
+        System.arraycopy(_board, 0, board, 0, NUM_SQUARES);
+        long hash = _hash;
+        _window[_moveCount & mask] = hash;
+        for (int k = _moveCount; k > _windowStart; k -= 1) {
+            int move = moveRecord(k),
+                from = move & SQUARE_MASK,
+                to = (move >>> SQUARE_BITS) & SQUARE_MASK;
+            byte piece = board[to];
+            board[from] = piece;
+            board[to] = 0;
+            hash ^= ZOBRIST[piece][to] ^ ZOBRIST[piece][from]
+                ^ BLACK_TO_MOVE;
+            _window[(k - 1) & mask] = hash;
+        }
+    }
+
+    /** Return the packed record (see SQUARE_BITS) of move K, where
+     *  _setUpCount < K <= _moveCount. */
+    private int moveRecord(int k) {
+        return _moves[k - _setUpCount];
     }
 
     /** Return the number of moves since the initial position that have not been
@@ -163,6 +267,31 @@ class Board {
         return _moveCount;
     }
 
+    /** Return true iff the move limit has been reached, so that the side to
+     *  move loses on attempting a move. */
+    boolean moveLimitReached() {
+        return 2 * _moveLimit <= _moveCount;
+    }
+
+    /** Copy my squares, as Piece ordinals indexed by Square.index(), into
+     *  DEST starting at OFFSET. */
+    void pack(byte[] dest, int offset) {
+        System.arraycopy(_board, 0, dest, offset, NUM_SQUARES);
+    }
+
+    /** Return true iff the last move made captured a piece.  False if
+     *  no move has been made since the position was set up. */
+    boolean lastMoveCaptured() {
+        return _moveCount > _undoLimit
+            && moveRecord(_moveCount) >>> CAPTURES_SHIFT != 0;
+    }
+
+    /** Return a 64-bit Zobrist hash of the current position and side to
+     *  move.  Equal positions have equal hashes on every Board. */
+    long hash() {
+        return _hash;
+    }
+
     /** Return location of the king. */
     Square kingPosition() {
         for (Square k : pieceLocations(WHITE)) {
@@ -181,7 +310,7 @@ class Board {
     /** Return the contents of the square at (COL, ROW), where
      *  0 <= COL, ROW <= 9. */
     final Piece get(int col, int row) {
-        return _board[col][row];
+        return PIECES[_board[row * SIZE + col]];
     }
 
     /** Return the contents of the square at COL ROW. */
@@ -191,23 +320,16 @@ class Board {
 
     /** Set square S to P. */
     final void put(Piece p, Square s) {
-        _board[s.col()][s.row()] = p;
-    }
-
-    /** Set square TO to P and record square FROM to P for undoing. */
-    final void revPutMove(Piece p, Square to, Square from) {
-        MoveNode curr = new MoveNode(p, from);
-        _turnNodes.add(curr);
-        put(p, to);
-
+        int i = s.index();
+        _hash ^= ZOBRIST[_board[i]][i] ^ ZOBRIST[p.ordinal()][i];
+        _board[i] = (byte) p.ordinal();
     }
 
-    /** Set square SQ to EMPTY and record square SQ to CAPTURED for undoing. */
-    final void revPutCapture(Piece captured, Piece empty, Square sq) {
-        MoveNode capture = new MoveNode(captured, sq);
-        _turnNodes.add(capture);
-        put(empty, sq);
-
+    /** Remove the piece at SQ, which is in direction DIR from the square
+     *  just moved to, recording it for undoing in _captures. */
+    private void removeCaptured(Square sq, int dir) {
+        _captures |= get(sq).ordinal() << (dir * PIECE_BITS);
+        put(EMPTY, sq);
     }
 
     /** Set square COL ROW to P. */
@@ -261,42 +383,59 @@ class Board {
         if (2 * _moveLimit <= _moveCount) {
             _winner = _turn.opponent();
             return;
-        } else if (!hasMove(get(from))) {
-            _winner = _turn.opponent();
-            return;
         }
         assert isLegal(from, to);
         Piece fromPiece = get(from);
-        Piece toPiece = get(to);
 
-        revPutMove(fromPiece, to, from);
-        revPutMove(toPiece, from, to);
+        put(fromPiece, to);
+        put(EMPTY, from);
 
+        _captures = 0;
         for (int dir = 0; dir < 4; dir += 1) {
             if (to.rookMove(dir, 2) != null) {
-                capture(to, to.rookMove(dir, 2));
+                capture(to, to.rookMove(dir, 2), dir);
             }
 
         }
-        Stack<MoveNode> temp = new Stack<MoveNode>();
-        while (!_turnNodes.isEmpty()) {
-            temp.add(_turnNodes.pop());
+        _sampleCount += 1;
+        if (_sampleCount % Events.MAKE_MOVE_SAMPLE_INTERVAL == 0) {
+            Events.MakeMove event = new Events.MakeMove();
+            if (event.shouldCommit()) {
+                event.move = Move.mv(from, to).toString();
+                event.captures = captureCount(_captures);
+                event.commit();
+            }
         }
-        _gameMoves.add(temp);
 
         if (fromPiece == KING && to.isEdge()) {
             _winner = WHITE;
-            return;
-        }
-
-        if (winner() != null) {
-            return;
         }
 
         _turn = _turn.opponent();
-        checkRepeated();
+        _hash ^= BLACK_TO_MOVE;
         _moveCount += 1;
+        if (_moveCount - _setUpCount == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _moves.length);
+        }
+        _moves[_moveCount - _setUpCount] =
+            from.index() | to.index() << SQUARE_BITS
+            | _captures << CAPTURES_SHIFT;
+        recordPosition();
+        if (_winner == null) {
+            checkRepeated();
+        }
+    }
 
+    /** Return the number of pieces recorded in CAPTURES, a set of
+     *  captured pieces packed as in _moves. */
+    private static int captureCount(int captures) {
+        int n = 0;
+        for (; captures != 0; captures >>>= PIECE_BITS) {
+            if ((captures & PIECE_MASK) != 0) {
+                n += 1;
+            }
+        }
+        return n;
     }
 
     /** Move according to MOVE, assuming it is a legal move. */
@@ -304,28 +443,27 @@ class Board {
         makeMove(move.from(), move.to());
     }
 
-    /** Capture the piece between SQ0 and SQ2, assuming a piece just moved to
-     *  SQ0 and the necessary conditions are satisfied. */
-    /** Capture the piece between SQ0 and SQ2, assuming a piece just moved to
-     *  SQ0 and the necessary conditions are satisfied. */
-    private void capture(Square sq0, Square sq2) {
+    /** Capture the piece between SQ0 and SQ2, in direction DIR from SQ0,
+     *  assuming a piece just moved to SQ0 and the necessary conditions are
+     *  satisfied. */
+    private void capture(Square sq0, Square sq2, int dir) {
         Square sq1 = sq0.between(sq2);
         Piece p1 = get(sq1);
 
         if (!hostileConditions(sq1, sq2)) {
             return;
         }
-        if (_castle.contains(sq1)) {
-            throneCapture(sq0, sq1, sq2);
+        if (isCastle(sq1)) {
+            throneCapture(sq0, sq1, sq2, dir);
         } else {
             if (get(sq2) == _turn) {
                 if (get(sq1) == KING) {
                     _winner = BLACK;
                 }
-                revPutCapture(p1, EMPTY, sq1);
+                removeCaptured(sq1, dir);
             } else if (_turn == WHITE && get(sq2) == KING) {
                 if (p1 == BLACK) {
-                    revPutCapture(p1, EMPTY, sq1);
+                    removeCaptured(sq1, dir);
                 }
             }
         }
@@ -336,10 +474,10 @@ class Board {
      *  return TRUE or FALSE*/
     private boolean hostileConditions(Square sq1, Square sq2) {
         if (get(sq1) == _turn.opponent() && (get(sq2) == _turn
-                || _castle.contains(sq2))) {
+                || isCastle(sq2))) {
             return true;
         } else if (get(sq1) == KING && (get(sq2) == BLACK
-                || _castle.contains(sq2))) {
+                || isCastle(sq2))) {
             return true;
         }
         return false;
@@ -347,8 +485,9 @@ class Board {
 
     /** Helper Function for capture, handles situation where prospective
      * capture of piece on Square SQ1 by pieces on Square SQ0 and
-     * Square SQ2 occurs when SQ1 is on the throne. */
-    private void throneCapture(Square sq0, Square sq1, Square sq2) {
+     * Square SQ2 occurs when SQ1 is on the throne, in direction DIR
+     * from SQ0. */
+    private void throneCapture(Square sq0, Square sq1, Square sq2, int dir) {
         int hostileThrown = 0;
         Piece p0 = get(sq0);
         Piece p1 = get(sq1);
@@ -356,17 +495,17 @@ class Board {
 
         if (sq1 != THRONE && p1 != KING) {
             if (sq2 != THRONE || p1 == BLACK) {
-                revPutCapture(p1, EMPTY, sq1);
+                removeCaptured(sq1, dir);
             } else if (sq2 == THRONE && p2 == EMPTY) {
-                revPutCapture(p1, EMPTY, sq1);
+                removeCaptured(sq1, dir);
             } else {
-                for (Square t : _castle) {
+                for (Square t : CASTLE) {
                     if (get(t) == BLACK) {
                         hostileThrown += 1;
                     }
                 }
                 if (hostileThrown == 3) {
-                    revPutCapture(p1, EMPTY, sq1);
+                    removeCaptured(sq1, dir);
                 }
             }
         } else {
@@ -375,51 +514,44 @@ class Board {
             if (p0 == BLACK  && (p2 == BLACK || sq2 == THRONE)
                     && (get(diag1) == BLACK  || diag1 == THRONE)
                     && (get(diag2) == BLACK  || diag2 == THRONE)) {
-                revPutCapture(p1, EMPTY, sq1);
+                removeCaptured(sq1, dir);
                 _winner = BLACK;
             }
         }
     }
 
-    /** Undo one move.  Has no effect on the initial board. */
+    /** Undo one move.  Has no effect on the initial board or just after
+     *  clearUndo(). */
     void undo() {
-        if (_moveCount > 0) {
-            undoPosition();
-            if (!_gameMoves.isEmpty()) {
-                Stack<MoveNode> turnNodes = _gameMoves.pop();
-                undoTurnNodes(turnNodes);
-                _turn = _turn.opponent();
-                undoPosition();
-                _moveCount -= 1;
+        _repeated = false;
+        if (_moveCount > _undoLimit) {
+            int move = moveRecord(_moveCount);
+            Square from = sq(move & SQUARE_MASK),
+                to = sq((move >>> SQUARE_BITS) & SQUARE_MASK);
+            put(get(to), from);
+            put(EMPTY, to);
+            int captures = move >>> CAPTURES_SHIFT;
+            for (int dir = 0; captures != 0; dir += 1) {
+                int p = captures & PIECE_MASK;
+                if (p != 0) {
+                    put(PIECES[p], to.rookMove(dir, 1));
+                }
+                captures >>>= PIECE_BITS;
             }
-        }
-
-    }
-    /** Undo each board change in a single move using TURNNODES.
-     * Has no effect on the initial board. */
-    void undoTurnNodes(Stack<MoveNode> turnNodes) {
-        while (!turnNodes.isEmpty()) {
-            MoveNode n = turnNodes.pop();
-            if (n.nodeP() == KING) {
-                _winner = null;
+            _turn = _turn.opponent();
+            _hash ^= BLACK_TO_MOVE;
+            _winner = null;
+            _moveCount -= 1;
+            if (move >>> CAPTURES_SHIFT != 0) {
+                restoreWindow();
             }
-            put(n.nodeP(), n.nodeSq());
         }
     }
 
-    /** Remove record of current position in the set of positions encountered,
-     *  unless it is a repeated position or we are at the first move. */
-    private void undoPosition() {
-        if (_moveCount > 0) {
-            _boardStrings.remove(encodedBoard());
-        }
-        _repeated = false;
-    }
-
-    /** Clear the undo stack and board-position counts. Does not modify the
-     *  current position or win status. */
+    /** Clear the undo stack. Does not modify the current position or win
+     *  status. */
     void clearUndo() {
-        _gameMoves.clear();
+        _undoLimit = _moveCount;
     }
 
     /** Return a new mutable list of all legal moves on the current board for
@@ -442,6 +574,34 @@ class Board {
         return sideMoves;
     }
 
+    /** Store the legal moves of the side to move in MOVES, which must
+     *  have room for MAX_MOVES, and return how many there are.  Allocates
+     *  nothing, for use where moves are generated very often. */
+    int legalMoves(Move[] moves) {
+        int n = 0;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Piece p = PIECES[_board[i]];
+            if (p.side() != _turn) {
+                continue;
+            }
+            for (int dir = 0; dir < 4; dir += 1) {
+                Move.MoveList ray = ROOK_MOVES[i][dir];
+                for (int k = 0; k < ray.size(); k += 1) {
+                    Move m = ray.get(k);
+                    Square to = m.to();
+                    if (_board[to.index()] != 0) {
+                        break;
+                    }
+                    if (to != THRONE || p == KING) {
+                        moves[n] = m;
+                        n += 1;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
     /** Return true iff SIDE has a legal move. */
     boolean hasMove(Piece side) {
         return legalMoves(side) != null;
@@ -456,24 +616,25 @@ class Board {
      *  and column designations are included along the left and bottom sides.
      */
     String toString(boolean coordinates) {
-        Formatter out = new Formatter();
+        String newline = System.lineSeparator();
+        StringBuilder out = new StringBuilder(2 * (SIZE + 2) * (SIZE + 1));
         for (int r = SIZE - 1; r >= 0; r -= 1) {
             if (coordinates) {
-                out.format("%2d", r + 1);
+                out.append(" ").append(r + 1);
             } else {
-                out.format("  ");
+                out.append("  ");
             }
             for (int c = 0; c < SIZE; c += 1) {
-                out.format(" %s", get(c, r));
+                out.append(' ').append(get(c, r));
             }
-            out.format("%n");
+            out.append(newline);
         }
         if (coordinates) {
-            out.format("  ");
+            out.append("  ");
             for (char c = 'a'; c <= 'i'; c += 1) {
-                out.format(" %c", c);
+                out.append(' ').append(c);
             }
-            out.format("%n");
+            out.append(newline);
         }
         return out.toString();
     }
@@ -503,6 +664,101 @@ class Board {
         return new String(result);
     }
 
+    /** Return a new Board in the position described by NOTATION (see
+     *  notation()). */
+    static Board fromNotation(String notation) {
+        Board result = new Board();
+        result.setPosition(notation);
+        return result;
+    }
+
+    /** Return a one-line description of the current position: the rows
+     *  from 9 down to 1, separated by "/", each listing its squares from
+     *  a to i as piece symbols (W, B, K), with runs of empty squares
+     *  written as their lengths; then the side to move (W or B); then the
+     *  number of moves made.  The initial position is
+     *  "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 B 0". */
+    String notation() {
+        StringBuilder out = new StringBuilder(2 * NUM_SQUARES);
+        for (int r = SIZE - 1; r >= 0; r -= 1) {
+            int empty = 0;
+            for (int c = 0; c < SIZE; c += 1) {
+                Piece p = get(c, r);
+                if (p == EMPTY) {
+                    empty += 1;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append(empty);
+                    empty = 0;
+                }
+                out.append(p);
+            }
+            if (empty > 0) {
+                out.append(empty);
+            }
+            out.append(r > 0 ? "/" : " ");
+        }
+        out.append(_turn).append(' ').append(_moveCount);
+        return out.toString();
+    }
+
+    /** Set me to the position described by NOTATION, as produced by
+     *  notation(), in either case.  The move number may be omitted, and
+     *  is then 0, and may not exceed twice the move limit.  The move
+     *  limit is unchanged, there is no winner, and there is nothing to
+     *  undo.  On bad NOTATION, throws IllegalArgumentException and leaves
+     *  me unchanged. */
+    void setPosition(String notation) {
+        String[] fields = notation.trim().split("\\s+");
+        if (fields.length < 2 || fields.length > 3) {
+            throw error("bad position notation: %s", notation);
+        }
+        byte[] board = new byte[NUM_SQUARES];
+        int kings, r, c;
+        kings = c = 0;
+        r = SIZE - 1;
+        for (char ch : fields[0].toUpperCase().toCharArray()) {
+            if (ch == '/' && c == SIZE && r > 0) {
+                r -= 1;
+                c = 0;
+            } else if (ch >= '1' && ch <= '9' && c + ch - '0' <= SIZE) {
+                c += ch - '0';
+            } else if (c < SIZE && (ch == 'W' || ch == 'B' || ch == 'K')) {
+                Piece p = ch == 'W' ? WHITE : ch == 'B' ? BLACK : KING;
+                board[r * SIZE + c] = (byte) p.ordinal();
+                kings += p == KING ? 1 : 0;
+                c += 1;
+            } else {
+                throw error("bad position notation: %s", notation);
+            }
+        }
+        Piece turn = fields[1].equalsIgnoreCase("w") ? WHITE
+            : fields[1].equalsIgnoreCase("b") ? BLACK : null;
+        int moveCount;
+        try {
+            moveCount = fields.length == 3 ? Integer.parseInt(fields[2]) : 0;
+        } catch (NumberFormatException excp) {
+            moveCount = -1;
+        }
+        if (r != 0 || c != SIZE || kings != 1 || turn == null
+            || moveCount < 0 || moveCount > 2 * _moveLimit) {
+            throw error("bad position notation: %s", notation);
+        }
+
+        _hash = turn == BLACK ? BLACK_TO_MOVE : 0;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            _board[i] = board[i];
+            _hash ^= ZOBRIST[board[i]][i];
+        }
+        _turn = turn;
+        _winner = null;
+        _repeated = false;
+        _moveCount = _undoLimit = moveCount;
+        _windowStart = _setUpCount = moveCount;
+        _window[moveCount & (_window.length - 1)] = _hash;
+    }
+
     /** Piece whose turn it is (WHITE or BLACK). */
     private Piece _turn;
     /** Cached value of winner on this board, or EMPTY if it has not been
@@ -512,18 +768,33 @@ class Board {
     private int _moveCount;
     /** True when current board is a repeated position (ending the game). */
     private boolean _repeated;
-    /** Instance variable of the board - 2d array of pieces. */
-    private Piece [][] _board;
-    /** Throne squares HashSet for easy access. */
-    private HashSet<Square> _castle;
-    /** String representation of board HashSet to compare board states. */
-    private HashSet<String> _boardStrings;
+    /** Ordinals of the pieces on each square, indexed by Square.index(). */
+    private byte[] _board;
+    /** Working copy of _board used by restoreWindow. */
+    private byte[] _scratch;
     /** Move limit integer instance. */
     private int _moveLimit;
-    /** Stack of MoveNodes representing changes in the game state during
-     * a single move. */
-    private Stack<MoveNode> _turnNodes;
-    /** Stack of stack of MoveNodes (_turnNode instances) representing
-     * all changes in the game state since the last clear undo. */
-    private Stack<Stack<MoveNode>> _gameMoves;
+    /** Zobrist hash of the current position, maintained by put and
+     *  makeMove. */
+    private long _hash;
+    /** Calls to makeMove, for sampling them as Events.MakeMove. */
+    private int _sampleCount;
+    /** _moves[k - _setUpCount] is the packed record (see SQUARE_BITS) of
+     *  move k, for _setUpCount < k <= _moveCount. */
+    private int[] _moves;
+    /** The repetition window: a ring, whose length is a power of 2,
+     *  holding at index K mod its length the hash of the position after K
+     *  moves, for _windowStart <= K <= _moveCount. */
+    private long[] _window;
+    /** Number of moves before the first position of the repetition
+     *  window: the count at the last capture or, if none, at set-up. */
+    private int _windowStart;
+    /** Number of moves before the position set up by init or
+     *  setPosition, before which no moves are recorded. */
+    private int _setUpCount;
+    /** Moves at or below this count cannot be undone. */
+    private int _undoLimit;
+    /** Pieces captured so far by the move being made, packed as in
+     *  _moves. */
+    private int _captures;
 }
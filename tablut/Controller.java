@@ -1,11 +1,9 @@
 package tablut;
 
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.Random;
-import java.util.Scanner;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-import java.util.function.Consumer;
+import java.util.concurrent.ExecutorService;
 
 import static tablut.Utils.*;
 import static tablut.Square.*;
@@ -22,56 +20,107 @@ final class Controller {
      *  as an exemplar for automated players.  Reports
      *  board changes to VIEW at appropriate points.  Uses REPORTER
      *  to report moves, wins, and errors to user. If LOGFILE is
-     *  non-null, copies all commands to it. If STRICT, exits the
-     *  program with non-zero code on receiving an erroneous move from a
-     *  player. */
+     *  non-null, copies all commands to it, from a background thread.
+     *  If STRICT, exits the program with non-zero code on receiving an
+     *  erroneous move from a player. */
     Controller(View view, PrintStream logFile, Reporter reporter,
                Player manualPlayerTemplate, Player autoPlayerTemplate,
                boolean strict) {
+        this(view, logFile, reporter, manualPlayerTemplate,
+             autoPlayerTemplate, strict, System.in, System.out);
+    }
+
+    /** As for the constructor above, but reading commands from INPUT and
+     *  writing prompts, moves, and other output to OUTPUT, rather than
+     *  using the standard input and output.  OUTPUT is flushed only
+     *  before waiting for input, at the end of a game, on errors, and
+     *  after engine protocol output, so it may be buffered. */
+    Controller(View view, PrintStream logFile, Reporter reporter,
+               Player manualPlayerTemplate, Player autoPlayerTemplate,
+               boolean strict, InputStream input, PrintStream output) {
         _view = view;
         _playing = false;
-        _logFile = logFile;
-        _input = new Scanner(System.in);
-        _autoPlayerTemplate = autoPlayerTemplate;
+        _log = logFile == null ? null : new LogWriter(logFile);
+        _output = output;
+        _input = new LineReader(input, _output::flush);
+        _whiteAutoTemplate = _blackAutoTemplate = autoPlayerTemplate;
         _manualPlayerTemplate = manualPlayerTemplate;
         _nonPlayer = manualPlayerTemplate.create(EMPTY, this);
-        _white = _autoPlayerTemplate.create(WHITE, this);
+        _white = _whiteAutoTemplate.create(WHITE, this);
         _black = _manualPlayerTemplate.create(BLACK, this);
         _reporter = reporter;
         _strict = strict;
     }
 
-    /** Play Tablut. */
+    /** Play Tablut.  Searches on an opponent's time end when a game
+     *  ends, and both players are closed when play does. */
     void play() {
         _playing = true;
         _winner = null;
         _board.init();
-        while (_playing) {
-            _view.update(this);
-            String command;
-            if (_winner == null) {
-                if (_board.turn() == WHITE) {
-                    command = _white.myMove();
+        _recording = true;
+        try {
+            while (_playing) {
+                _view.update(this);
+                String command;
+                if (_winner == null) {
+                    if (_pondering) {
+                        startPondering();
+                    }
+                    if (_board.turn() == WHITE) {
+                        command = _white.myMove();
+                    } else {
+                        command = _black.myMove();
+                    }
                 } else {
-                    command = _black.myMove();
-                }
-            } else {
-                command = _nonPlayer.myMove();
-                if (command == null) {
-                    command = "quit";
+                    stopPondering();
+                    command = _nonPlayer.myMove();
+                    if (command == null) {
+                        command = "quit";
+                    }
                 }
-            }
-            try {
-                executeCommand(command);
-            } catch (IllegalArgumentException excp) {
-                reportError("Error: %s%n", excp.getMessage());
-                if (_strict) {
-                    System.exit(1);
+                try {
+                    executeCommand(command);
+                } catch (IllegalArgumentException excp) {
+                    reportError("Error: %s%n", excp.getMessage());
+                    if (_strict) {
+                        closeOutput();
+                        System.exit(1);
+                    }
                 }
             }
+        } finally {
+            _white.close();
+            _black.close();
+            closeOutput();
         }
-        if (_logFile != null) {
-            _logFile.close();
+    }
+
+    /** Flush my output and close my log and game record, if any, at the
+     *  end of play. */
+    private void closeOutput() {
+        _output.flush();
+        if (_log != null) {
+            _log.close();
+        }
+        if (_record != null) {
+            _record.close();
+        }
+    }
+
+    /** End any search either player is making on its opponent's time. */
+    private void stopPondering() {
+        _white.stopPondering();
+        _black.stopPondering();
+    }
+
+    /** Let the player who is not to move ponder, if the player to move is
+     *  manual. */
+    private void startPondering() {
+        if (_board.turn() == WHITE && _white.isManual()) {
+            _black.ponder();
+        } else if (_board.turn() == BLACK && _black.isManual()) {
+            _white.ponder();
         }
     }
 
@@ -81,6 +130,23 @@ final class Controller {
         return _board;
     }
 
+    /** Return the stream to which moves and other output are written. */
+    PrintStream output() {
+        return _output;
+    }
+
+    /** Return the pool on which automated players should run their
+     *  searches, or null if they should search on the calling thread. */
+    ExecutorService searchPool() {
+        return _searchPool;
+    }
+
+    /** Have automated players run their searches on POOL (or on the
+     *  calling thread if POOL is null). */
+    void setSearchPool(ExecutorService pool) {
+        _searchPool = pool;
+    }
+
     /** Return a random integer in the range 0 inclusive to U, exclusive.
      *  Available for use by AIs that use random selections in some cases.
      *  Once setRandomSeed is called with a particular value, this method
@@ -94,21 +160,24 @@ final class Controller {
      *  Initially, the PRNG is randomly seeded. */
     void setSeed(long seed) {
         _randGen.setSeed(seed);
+        _seed = seed;
+    }
+
+    /** Record games played from now on with RECORD (or stop recording
+     *  them if RECORD is null). */
+    void setRecord(GameRecordWriter record) {
+        _record = record;
     }
 
     /** Return the next line of input, or null if there is no more. First
      *  prompts for the line.  Trims the returned line (if any) of all
      *  leading and trailing whitespace. First issues a prompt iff PROMPT. */
     String readLine(boolean prompt) {
-        if (prompt) {
-            System.out.print("> ");
-            System.out.flush();
-        }
-        if (_input.hasNextLine()) {
-            return _input.nextLine().trim();
-        } else {
-            return null;
+        if (prompt && !_engineMode) {
+            _output.print("> ");
         }
+        String line = _input.readLine();
+        return line == null ? null : line.trim();
     }
 
     /** Return true iff white is a manual player. */
@@ -121,8 +190,10 @@ final class Controller {
         return _black.isManual();
     }
 
-    /** Report error by calling reportError(FORMAT, ARGS) on my reporter. */
+    /** Report error by calling reportError(FORMAT, ARGS) on my reporter,
+     *  after flushing my output so that the error follows it. */
     void reportError(String format, Object... args) {
+        _output.flush();
         _reporter.reportError(format, args);
     }
 
@@ -136,88 +207,250 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
+    /** Report STATS, describing the search by the player of SIDE for its
+     *  last move, as a note to my reporter and in the log, if per-move
+     *  statistics are enabled. */
+    void reportStats(Piece side, SearchStats stats) {
+        if (_logStats && stats != null) {
+            reportNote("%s: %s", side.toName(), stats.summary());
+            logComment("%s: %s", side.toName(), stats.summary());
+        }
+    }
+
+    /** Record that an automated player took NANOS nanoseconds to find a
+     *  move in BOARD, using a search described by STATS. */
+    void recordLatency(Board board, long nanos, SearchStats stats) {
+        _latencies.record(board, nanos, stats);
+        _lastScore = stats.score();
+        _lastMillis = nanos / 1_000_000;
+    }
+
     /** Print a comment in the log.  The arguments FORMAT and ARGS are
      *  as for String.format. */
     void logComment(String format, Object... args) {
-        if (_logFile != null) {
-            _logFile.printf("# " + format + "%n", args);
-            _logFile.flush();
-        }
-    }
-
-    /** A Command is pair (<pattern>, <processor>), where <pattern> is a
-     *  Matcher that matches instances of a particular command, and
-     *  <processor> is a functional object whose .accept method takes a
-     *  successfully matched Matcher and performs some operation. */
-    private static class Command {
-        /** A new Command that matches PATN (a regular expression) and uses
-         *  PROCESSOR to process commands that match the pattern. */
-        Command(String patn, Consumer<Matcher> processor) {
-            _matcher = Pattern.compile(patn).matcher("");
-            _processor = processor;
-        }
-
-        /** A Matcher matching my pattern. */
-        protected final Matcher _matcher;
-        /** The function object that implements my command. */
-        protected final Consumer<Matcher> _processor;
-    }
-
-    /** A list of Commands describing the valid textual commands to the
-     *  Tablut program and the methods to process them. */
-    private Command[] _commands = {
-        new Command("quit$", this::doQuit),
-        new Command("new$", this::doNew),
-        new Command("seed\\s+(\\d+)$", this::doSeed),
-        new Command("dump$", this::doDump),
-        new Command("undo$", this::doUndo),
-        new Command("manual\\s+(white|black)$", this::doManual),
-        new Command("auto\\s+(white|black)$", this::doAuto),
-        new Command("limit\\s+(\\d+)$", this::doLimit),
-        new Command("toggle\\s+" + SQ + "$", this::doToggle),
-        new Command(Move.MOVE_PATTERN.pattern(), this::doMove)
-    };
-
-    /** A Matcher whose Pattern matches comments. */
-    private static final Matcher COMMENT = Pattern.compile("#.*").matcher("");
+        if (_log != null) {
+            _log.println("# " + String.format(format, args));
+        }
+    }
 
     /** Check that CMND is one of the valid Tablut commands and execute it, if
      *  so, raising an IllegalArgumentException otherwise. */
     private void executeCommand(String cmnd) {
-        if (_logFile != null) {
-            _logFile.println(cmnd);
-            _logFile.flush();
+        if (_log != null) {
+            _log.println(cmnd);
         }
 
-        COMMENT.reset(cmnd);
-        cmnd = COMMENT.replaceFirst("").trim().toLowerCase();
+        int comment = cmnd.indexOf('#');
+        if (comment >= 0) {
+            cmnd = cmnd.substring(0, comment);
+        }
+        cmnd = cmnd.trim().toLowerCase();
 
         if (cmnd.isEmpty()) {
             return;
         }
-        for (Command parser : _commands) {
-            parser._matcher.reset(cmnd);
-            if (parser._matcher.matches()) {
-                parser._processor.accept(parser._matcher);
-                return;
+        Events.Command event = new Events.Command();
+        event.begin();
+        try {
+            dispatch(cmnd);
+        } catch (IllegalArgumentException excp) {
+            event.failed = true;
+            throw excp;
+        } finally {
+            if (event.shouldCommit()) {
+                event.command = cmnd;
+                event.commit();
             }
         }
-        throw error("Bad command: %s", cmnd);
+    }
+
+    /** Execute CMND, a trimmed, nonempty, lower-case command with no
+     *  comment.  Moves, by far the commonest commands, are recognized
+     *  first by their shape.  Other commands are split into words and
+     *  selected by their first word, each checking its own arguments. */
+    private void dispatch(String cmnd) {
+        if (Move.isGrammaticalMove(cmnd)) {
+            doMove(cmnd);
+            return;
+        }
+        String[] words = words(cmnd);
+        int n = words.length;
+        switch (words[0]) {
+        case "quit":
+            check(n == 1, cmnd);
+            doQuit();
+            break;
+        case "new":
+            check(n == 1, cmnd);
+            doNew();
+            break;
+        case "seed":
+            check(n == 2 && isNumber(words[1]), cmnd);
+            doSeed(words[1]);
+            break;
+        case "dump":
+            check(n == 1 || n == 2 && words[1].equals("notation"), cmnd);
+            doDump(n == 2);
+            break;
+        case "setup":
+            check(n == 3 || n == 4, cmnd);
+            doSetup(join(words, 1, n));
+            break;
+        case "undo":
+            check(n == 1, cmnd);
+            doUndo();
+            break;
+        case "manual":
+            check(n == 2 && isColor(words[1]), cmnd);
+            doManual(words[1]);
+            break;
+        case "auto":
+            check(n >= 2 && isColor(words[1]), cmnd);
+            doAuto(words[1], n == 2 ? null : join(words, 2, n));
+            break;
+        case "limit":
+            check(n == 2 && isNumber(words[1]), cmnd);
+            doLimit(words[1]);
+            break;
+        case "toggle":
+            check(n == 2 && Square.isSquare(words[1]), cmnd);
+            doToggle(words[1]);
+            break;
+        case "ponder":
+            check(n == 2 && isOnOff(words[1]), cmnd);
+            doPonder(words[1]);
+            break;
+        case "stats":
+            check(n == 1 || n == 2 && isOnOff(words[1]), cmnd);
+            doStats(n == 2 ? words[1] : null);
+            break;
+        case "latency":
+            check(n == 1 || n == 2 && words[1].equals("clear"), cmnd);
+            doLatency(n == 2);
+            break;
+        case "bench":
+            check(n == 1 || n == 2 && isNumber(words[1]), cmnd);
+            doBench(n == 2 ? Integer.parseInt(words[1])
+                    : Bench.DEFAULT_DEPTH);
+            break;
+        case "engine":
+            check(n == 1, cmnd);
+            doEngine();
+            break;
+        case "isready":
+            check(n == 1, cmnd);
+            doIsReady();
+            break;
+        case "position":
+            check(n >= 2 && words[1].equals("startpos")
+                  || n >= 4 && words[1].equals("notation"), cmnd);
+            doPosition(words);
+            break;
+        case "go":
+            SearchLimits limits = goLimits(words);
+            check(limits != null, cmnd);
+            doGo(limits);
+            break;
+        case "stop":
+            check(n == 1, cmnd);
+            doStop();
+            break;
+        case "ponderhit":
+            check(n == 1, cmnd);
+            doPonderHit();
+            break;
+        case "setoption":
+            check((n == 3 || n == 5 && words[3].equals("value"))
+                  && words[1].equals("name"), cmnd);
+            doSetOption(words[2], n == 5 ? words[4] : null);
+            break;
+        default:
+            check(false, cmnd);
+        }
+    }
+
+    /** Raise an IllegalArgumentException reporting CMND as a bad command
+     *  unless OK. */
+    private static void check(boolean ok, String cmnd) {
+        if (!ok) {
+            throw error("Bad command: %s", cmnd);
+        }
+    }
+
+    /** Return the words of CMND, which are separated by whitespace.  CMND
+     *  must be trimmed and nonempty. */
+    static String[] words(String cmnd) {
+        int n = 1;
+        for (int i = 1; i < cmnd.length(); i += 1) {
+            if (Character.isWhitespace(cmnd.charAt(i))
+                && !Character.isWhitespace(cmnd.charAt(i - 1))) {
+                n += 1;
+            }
+        }
+        String[] result = new String[n];
+        int k, start;
+        k = start = 0;
+        for (int i = 0; i <= cmnd.length(); i += 1) {
+            if (i == cmnd.length() || Character.isWhitespace(cmnd.charAt(i))) {
+                if (i > start) {
+                    result[k] = cmnd.substring(start, i);
+                    k += 1;
+                }
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return WORDS[START .. END-1] separated by blanks. */
+    private static String join(String[] words, int start, int end) {
+        StringBuilder result = new StringBuilder();
+        for (int i = start; i < end; i += 1) {
+            if (i > start) {
+                result.append(' ');
+            }
+            result.append(words[i]);
+        }
+        return result.toString();
+    }
+
+    /** Return true iff WORD is a nonempty string of decimal digits. */
+    private static boolean isNumber(String word) {
+        for (int i = 0; i < word.length(); i += 1) {
+            if (word.charAt(i) < '0' || word.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return !word.isEmpty();
+    }
+
+    /** Return true iff WORD is "white" or "black". */
+    private static boolean isColor(String word) {
+        return word.equals("white") || word.equals("black");
+    }
+
+    /** Return true iff WORD is "on" or "off". */
+    private static boolean isOnOff(String word) {
+        return word.equals("on") || word.equals("off");
     }
 
     /** Command "new". */
-    private void doNew(Matcher unused) {
+    private void doNew() {
         _board.init();
         _winner = null;
+        endRecord();
+        _recording = true;
     }
 
-    /** Command "manual <color>", where <color> is COLOR.group(1). */
-    private void doManual(Matcher color) {
-        switch (color.group(1)) {
+    /** Command "manual <color>", where <color> is COLOR. */
+    private void doManual(String color) {
+        switch (color) {
         case "black":
+            _black.close();
             _black = _manualPlayerTemplate.create(BLACK, this);
             break;
         case "white":
+            _white.close();
             _white = _manualPlayerTemplate.create(WHITE, this);
             break;
         default:
@@ -226,14 +459,27 @@ final class Controller {
         _view.update(this);
     }
 
-    /** Command "auto <color>", where <color> is COLOR.group(1). */
-    private void doAuto(Matcher color) {
-        switch (color.group(1)) {
+    /** Command "auto <color> [<settings>]", where <color> is COLOR and
+     *  <settings>, if present, is SETTINGS, engine settings in the form
+     *  read by EngineConfig.parse.  The settings are kept for later
+     *  "auto <color>" commands. */
+    private void doAuto(String color, String settings) {
+        Player template = settings == null ? null
+            : EngineConfig.parse(settings).newPlayer(null, null);
+        switch (color) {
         case "black":
-            _black = _autoPlayerTemplate.create(BLACK, this);
+            if (template != null) {
+                _blackAutoTemplate = template;
+            }
+            _black.close();
+            _black = _blackAutoTemplate.create(BLACK, this);
             break;
         case "white":
-            _white = _autoPlayerTemplate.create(WHITE, this);
+            if (template != null) {
+                _whiteAutoTemplate = template;
+            }
+            _white.close();
+            _white = _whiteAutoTemplate.create(WHITE, this);
             break;
         default:
             assert false;
@@ -241,11 +487,30 @@ final class Controller {
         _view.update(this);
     }
 
-    /** Command "toggle". The first group of MAT is a square designation.
+    /** Use TEMPLATE as the exemplar of automated players for SIDE (WHITE
+     *  or BLACK).  A current automated player of SIDE is replaced by one
+     *  created from TEMPLATE. */
+    void setAutoPlayerTemplate(Piece side, Player template) {
+        if (side == WHITE) {
+            _whiteAutoTemplate = template;
+            if (!_white.isManual()) {
+                _white.close();
+                _white = template.create(WHITE, this);
+            }
+        } else {
+            _blackAutoTemplate = template;
+            if (!_black.isManual()) {
+                _black.close();
+                _black = template.create(BLACK, this);
+            }
+        }
+    }
+
+    /** Command "toggle". POSN is a square designation.
      *  The contents of the square are modified:
      *  EMPTY -> WHITE -> KING -> BLACK .< ENPTY". Clear Undo information. */
-    private void doToggle(Matcher mat) {
-        Square sq = sq(mat.group(1));
+    private void doToggle(String posn) {
+        Square sq = sq(posn);
         Piece piece;
         switch (_board.get(sq)) {
         case EMPTY: piece = WHITE; break;
@@ -256,52 +521,312 @@ final class Controller {
         }
         _board.put(piece, sq);
         _board.clearUndo();
+        endRecord();
     }
 
-    /** Command "quit". */
-    private void doQuit(Matcher unused) {
+    /** Command "quit".  The latencies of automated moves are printed
+     *  first if per-move statistics are on (see doStats). */
+    private void doQuit() {
         _playing = false;
+        if (_logStats && _latencies.count() > 0) {
+            _output.printf("Move latencies:%n%s", _latencies);
+        }
+        _output.flush();
+        stopPondering();
+        if (_engine != null) {
+            _engine.shutdown();
+        }
     }
 
-    /** Command "seed N" where N is the first group of MAT. */
-    private void doSeed(Matcher mat) {
+    /** Command "seed N" where N is the decimal numeral NUMERAL. */
+    private void doSeed(String numeral) {
         try {
-            setSeed(Long.parseLong(mat.group(1)));
+            setSeed(Long.parseLong(numeral));
         } catch (NumberFormatException excp) {
             throw error("number too large");
         }
     }
 
-    /** Command "limit N" where N is the first captured group of MAT. */
-    private void doLimit(Matcher mat) {
+    /** Command "limit N" where N is the decimal numeral NUMERAL. */
+    private void doLimit(String numeral) {
         try {
-            _board.setMoveLimit(Integer.parseInt(mat.group(1)));
+            _board.setMoveLimit(Integer.parseInt(numeral));
         } catch (NumberFormatException excp) {
             throw error("number too large");
         }
     }
 
-    /** Execute a move command matched in MAT. */
-    private void doMove(Matcher mat) {
-        _board.makeMove(Move.mv(mat.group(0)));
+    /** Execute the move command CMND. */
+    private void doMove(String cmnd) {
+        Move move = Move.mv(cmnd);
+        if (move == null) {
+            throw error("Bad move: %s", cmnd);
+        }
+        _board.makeMove(move);
+        recordMove(move);
         if (_winner == null) {
             _winner = _board.winner();
             if (_winner != null) {
+                if (_recording && _record != null) {
+                    _record.end(_winner);
+                    _recording = false;
+                }
                 _view.update(this);
                 _reporter.reportNote("%s wins.", _winner.toName());
+                _output.flush();
+            }
+        }
+    }
+
+    /** Add MOVE, just made, to the game record, if the game is being
+     *  recorded, starting the record if this is the first move.  Automated
+     *  moves are annotated with the score and time passed to the last
+     *  recordLatency. */
+    private void recordMove(Move move) {
+        if (_recording && _record != null) {
+            if (!_record.inGame()) {
+                _record.begin(_board.moveLimit(), _seed, !_white.isManual(),
+                              !_black.isManual());
             }
+            _record.move(move, _lastScore, _lastMillis);
+        }
+        _lastScore = GameRecord.NO_SCORE;
+        _lastMillis = 0;
+    }
+
+    /** End the game record, if any, of the current game as abandoned, and
+     *  stop recording until the next new game, since the board may no
+     *  longer be reachable by recorded moves. */
+    private void endRecord() {
+        if (_record != null) {
+            _record.end(null);
+        }
+        _recording = false;
+    }
+
+    /** Command "ponder on|off", where the choice is CHOICE.  When on,
+     *  an automated player searches on its opponent's time while a manual
+     *  player is to move. */
+    private void doPonder(String choice) {
+        _pondering = choice.equals("on");
+        if (!_pondering) {
+            stopPondering();
+        }
+    }
+
+    /** Command "stats [on|off]".  With no argument (CHOICE null),
+     *  print counters for the last search of each automated player and
+     *  of the engine.  Otherwise, turn per-move statistics lines on or
+     *  off. */
+    private void doStats(String choice) {
+        if (choice != null) {
+            _logStats = choice.equals("on");
+            return;
+        }
+        printStats(WHITE.toName(), _white.statistics());
+        printStats(BLACK.toName(), _black.statistics());
+        if (_engine != null) {
+            printStats("Engine", _engine.statistics());
+        }
+    }
+
+    /** Command "latency [clear]".  Print percentiles of the search time,
+     *  nodes, and depth of automated moves, or forget them if CLEAR. */
+    private void doLatency(boolean clear) {
+        if (clear) {
+            _latencies.clear();
+        } else {
+            _output.print(_latencies);
+        }
+    }
+
+    /** Command "bench [<depth>]".  Run the fixed benchmark (see Bench),
+     *  searching to DEPTH. */
+    private void doBench(int depth) {
+        if (depth < 1) {
+            throw error("bench depth must be positive");
         }
+        Bench.run(depth, _output);
     }
 
-    /** Dump the contents of the board on standard output. */
-    private void doDump(Matcher unused) {
-        System.out.printf("===%n%s===%n", _board);
+    /** Print STATS, labeled with NAME, on the standard output, unless
+     *  STATS is null. */
+    private void printStats(String name, SearchStats stats) {
+        if (stats != null) {
+            _output.printf("%s: %s", name, stats);
+        }
+    }
+
+    /** Command "engine".  Switch to engine protocol mode: both sides
+     *  become manual, prompts are suppressed, and the engine's options
+     *  are listed. */
+    private void doEngine() {
+        _engineMode = true;
+        _white.close();
+        _black.close();
+        _white = _manualPlayerTemplate.create(WHITE, this);
+        _black = _manualPlayerTemplate.create(BLACK, this);
+        engineOutput("id name Tablut 61B");
+        for (String option : engine().options()) {
+            engineOutput(option);
+        }
+        engineOutput("engineok");
+    }
+
+    /** Command "isready". */
+    private void doIsReady() {
+        engineOutput("readyok");
+    }
+
+    /** Command "setup NOTATION", where NOTATION is as for
+     *  Board.notation().  Sets up the board accordingly, keeping the move
+     *  limit and clearing undo information. */
+    private void doSetup(String notation) {
+        _board.setPosition(notation);
+        endRecord();
+        _winner = null;
+        _view.update(this);
+    }
+
+    /** Command "position startpos [moves M1 M2 ...]" or "position notation
+     *  NOTATION [moves M1 M2 ...]", whose words are WORDS, where NOTATION is
+     *  as for Board.notation().  Sets up the board accordingly. */
+    private void doPosition(String[] words) {
+        int first;
+        Board start = new Board();
+        if (words[1].equals("startpos")) {
+            first = 2;
+        } else {
+            first = words.length > 4 && isNumber(words[4]) ? 5 : 4;
+            start.setPosition(join(words, 2, first));
+        }
+        endRecord();
+        _board.copy(start);
+        _winner = null;
+        for (int i = first; i < words.length; i += 1) {
+            if (i == first && words[i].equals("moves")) {
+                continue;
+            }
+            Move move = Move.mv(words[i]);
+            if (move == null || _board.winner() != null
+                || !_board.isLegal(move.from()) || !_board.isLegal(move)) {
+                throw error("illegal move in position: %s", words[i]);
+            }
+            _board.makeMove(move);
+        }
+        _winner = _board.winner();
+        _view.update(this);
+    }
+
+    /** Return the limits given by the words WORDS of the command "go
+     *  [depth N] [movetime N] [timeleft N] [nodes N] [infinite] [ponder]",
+     *  or null if they are malformed. */
+    private static SearchLimits goLimits(String[] words) {
+        SearchLimits limits = new SearchLimits();
+        try {
+            for (int i = 1; i < words.length; i += 1) {
+                switch (words[i]) {
+                case "depth": case "movetime": case "timeleft":
+                case "nodes":
+                    if (i + 1 == words.length || !isNumber(words[i + 1])) {
+                        return null;
+                    }
+                    long value = Long.parseLong(words[i + 1]);
+                    if (words[i].equals("depth")) {
+                        limits.setDepth(Math.toIntExact(value));
+                    } else if (words[i].equals("movetime")) {
+                        limits.setMoveTime(value);
+                    } else if (words[i].equals("timeleft")) {
+                        limits.setTimeLeft(value);
+                    } else {
+                        limits.setNodes(value);
+                    }
+                    i += 1;
+                    break;
+                case "infinite":
+                    limits.setInfinite(true);
+                    break;
+                case "ponder":
+                    limits.setPonder(true);
+                    break;
+                default:
+                    return null;
+                }
+            }
+        } catch (NumberFormatException | ArithmeticException excp) {
+            throw error("number too large");
+        }
+        return limits;
+    }
+
+    /** Command "go ...", with search limits LIMITS.  Starts a search of
+     *  the current position in the background. */
+    private void doGo(SearchLimits limits) {
+        if (_board.winner() != null) {
+            throw error("game is over");
+        }
+        engine().go(_board, limits);
+    }
+
+    /** Command "stop". */
+    private void doStop() {
+        if (_engine != null) {
+            _engine.stop();
+        }
+    }
+
+    /** Command "ponderhit". */
+    private void doPonderHit() {
+        if (_engine != null) {
+            _engine.ponderHit();
+        }
+    }
+
+    /** Command "setoption name NAME [value VALUE]".  VALUE is null if
+     *  absent. */
+    private void doSetOption(String name, String value) {
+        engine().setOption(name, value);
+    }
+
+    /** Return my engine, creating it if needed. */
+    private Engine engine() {
+        if (_engine == null) {
+            _engine = new Engine(this::engineOutput);
+        }
+        return _engine;
+    }
+
+    /** Write LINE, a line of engine protocol output, to the standard
+     *  output, and flush it, since the engine's client waits for it. */
+    private void engineOutput(String line) {
+        _output.println(line);
+        _output.flush();
+    }
+
+    /** Dump the contents of the board on standard output, or, if
+     *  NOTATION, print its position notation. */
+    private void doDump(boolean notation) {
+        if (notation) {
+            _output.println(_board.notation());
+            return;
+        }
+        _output.print("===");
+        _output.println();
+        _output.print(_board);
+        _output.print("===");
+        _output.println();
     }
 
     /** Undo back to before my last move, if there was one (otherwise does
      *  nothing). */
-    private void doUndo(Matcher unused) {
+    private void doUndo() {
         if (_board.moveCount() > 1) {
+            if (_record != null && _record.inGame()) {
+                _record.undo();
+                _record.undo();
+            } else {
+                endRecord();
+            }
             _board.undo();
             _board.undo();
             _winner = null;
@@ -324,22 +849,47 @@ final class Controller {
     /** My pseudo-random number generator. */
     private Random _randGen = new Random();
 
-    /** Log file, or null if absent. */
-    private PrintStream _logFile;
+    /** Writer of game records, or null if games are not recorded. */
+    private GameRecordWriter _record;
+
+    /** True iff moves of the current game are being recorded (it began
+     *  from the initial position and has not been edited or ended). */
+    private boolean _recording;
+
+    /** Score of the last automated move, or NO_SCORE. */
+    private int _lastScore = GameRecord.NO_SCORE;
+
+    /** Search time of the last automated move in milliseconds, or 0. */
+    private long _lastMillis;
+
+    /** The last random seed set, or 0 if the seed is random. */
+    private long _seed;
+
+    /** Writer of the log file, or null if absent. */
+    private LogWriter _log;
 
     /** Input source. */
-    private Scanner _input;
+    private LineReader _input;
 
-    /** The current White and Black players, each created from
-     *  _autoPlayerTemplate or _manualPlayerTemplate. */
+    /** Destination of prompts, moves, dumps, and engine output. */
+    private PrintStream _output;
+
+    /** Pool for searches by automated players, or null. */
+    private ExecutorService _searchPool;
+
+    /** The current White and Black players, each created from its
+     *  side's automated-player template or _manualPlayerTemplate. */
     private Player _white, _black;
 
     /** A dummy Player used to return commands but not moves when no
      *  game is in progress. */
     private Player _nonPlayer;
 
-    /** The current templates for manual and automated players. */
-    private Player _autoPlayerTemplate, _manualPlayerTemplate;
+    /** The current templates for automated White and Black players. */
+    private Player _whiteAutoTemplate, _blackAutoTemplate;
+
+    /** The template for manual players. */
+    private Player _manualPlayerTemplate;
 
     /** Reporter for messages and errors. */
     private Reporter _reporter;
@@ -348,4 +898,22 @@ final class Controller {
      *  code. */
     private boolean _strict;
 
+    /** True iff each automated move is followed by a line of search
+     *  statistics. */
+    private boolean _logStats;
+
+    /** Distributions of the costs of automated moves. */
+    private MoveLatencies _latencies = new MoveLatencies();
+
+    /** True iff automated players ponder on their opponents' time. */
+    private boolean _pondering;
+
+    /** True once the "engine" command has switched to engine protocol
+     *  mode. */
+    private boolean _engineMode;
+
+    /** Searches in the background for engine protocol commands, or null
+     *  if not yet needed. */
+    private Engine _engine;
+
 }
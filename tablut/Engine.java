@@ -0,0 +1,202 @@
+package tablut;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import static tablut.Utils.*;
+
+/** Runs AI searches on a background thread under the control of engine
+ *  protocol commands (see Controller), so that the command loop never
+ *  blocks on a search.  Each search is of a private copy of a Board.
+ *  Progress is reported as "info ..." lines and the result as a
+ *  "bestmove ..." line, both sent to an output function.
+ *  @author Andrew Kaplan
+ */
+class Engine {
+
+    /** A new Engine that sends its output lines to OUTPUT. */
+    Engine(Consumer<String> output) {
+        _output = output;
+        _ai = new AI();
+        _ai.setTable(_table);
+        _ai.setInfoListener(output);
+        _worker = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "tablut-search");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    /** Return lines describing the options accepted by setOption. */
+    String[] options() {
+        return new String[] {
+            String.format("option name hash type spin default %d min 1"
+                          + " max 65536", TranspositionTable.DEFAULT_MEGABYTES),
+            "option name threads type spin default 1 min 1 max 256",
+            "option name multipv type spin default 1 min 1 max 256",
+            "option name hashfile type string default <empty>",
+            "option name clearhash type button"
+        };
+    }
+
+    /** Set option NAME to VALUE.  Options cannot change during a
+     *  search, which may run until stopped. */
+    void setOption(String name, String value) {
+        if (searching()) {
+            throw error("cannot set options while searching");
+        }
+        try {
+            switch (name) {
+            case "hash":
+                _table.resize(Integer.parseInt(value));
+                break;
+            case "threads":
+                _ai.setThreads(Integer.parseInt(value));
+                break;
+            case "multipv":
+                _multiPV = Math.max(1, Integer.parseInt(value));
+                break;
+            case "hashfile":
+                setHashFile(value);
+                break;
+            case "clearhash":
+                _table.clear();
+                break;
+            default:
+                throw error("unknown option: %s", name);
+            }
+        } catch (NumberFormatException excp) {
+            throw error("bad value for option %s: %s", name, value);
+        }
+    }
+
+    /** Keep my table in the file named FILE, or in memory if FILE is
+     *  null, empty, or "<empty>". */
+    private void setHashFile(String file) {
+        int megabytes = _table.megabytes();
+        TranspositionTable old = _table;
+        if (file == null || file.isEmpty() || file.equals("<empty>")) {
+            _table = new TranspositionTable(megabytes);
+        } else {
+            try {
+                _table = new MappedTable(Path.of(file), megabytes);
+            } catch (IOException | InvalidPathException excp) {
+                throw error("could not open table file %s: %s", file,
+                            excp.getMessage());
+            }
+        }
+        _ai.setTable(_table);
+        old.close();
+    }
+
+    /** Start searching BOARD (which is copied) within LIMITS, unless a
+     *  search is already under way. */
+    synchronized void go(Board board, SearchLimits limits) {
+        if (searching()) {
+            throw error("search already in progress");
+        }
+        Board position = new Board(board);
+        limits.setMultiPV(_multiPV);
+        _limits = limits;
+        _ai.reset();
+        _search = _worker.submit(() -> runSearch(position, limits));
+    }
+
+    /** Body of a search of BOARD within LIMITS, run on the worker
+     *  thread. */
+    private void runSearch(Board board, SearchLimits limits) {
+        Move best = _ai.search(board, limits);
+        synchronized (this) {
+            while ((limits.infinite() || limits.ponder()) && !_stopRequested) {
+                try {
+                    wait();
+                } catch (InterruptedException excp) {
+                    break;
+                }
+            }
+            _stopRequested = false;
+        }
+        _output.accept("bestmove " + (best == null ? "none" : best));
+    }
+
+    /** Stop the current search, if any, and wait for it to report its
+     *  best move. */
+    void stop() {
+        synchronized (this) {
+            if (!searching()) {
+                return;
+            }
+            _stopRequested = true;
+            _ai.stop();
+            notifyAll();
+        }
+        waitForSearch();
+    }
+
+    /** The opponent played the move being pondered: continue the current
+     *  search as a normal timed search. */
+    synchronized void ponderHit() {
+        if (searching() && _limits.ponder()) {
+            _ai.ponderHit();
+            notifyAll();
+        }
+    }
+
+    /** Return counters describing the current or last search. */
+    SearchStats statistics() {
+        return _ai.statistics();
+    }
+
+    /** Return true iff a search is under way. */
+    synchronized boolean searching() {
+        return _search != null && !_search.isDone();
+    }
+
+    /** Wait for the current search, if any, to finish. */
+    void waitForSearch() {
+        Future<?> search;
+        synchronized (this) {
+            search = _search;
+        }
+        if (search == null) {
+            return;
+        }
+        try {
+            search.get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Stop any search and release my worker thread and my table's
+     *  file, if any. */
+    void shutdown() {
+        stop();
+        _worker.shutdown();
+        _table.close();
+    }
+
+    /** Destination of info and bestmove lines. */
+    private final Consumer<String> _output;
+    /** The searcher. */
+    private final AI _ai;
+    /** Table used by all my searches. */
+    private TranspositionTable _table = new TranspositionTable();
+    /** Thread on which searches run. */
+    private final ExecutorService _worker;
+    /** The current or last search, or null. */
+    private Future<?> _search;
+    /** Number of best lines each search reports. */
+    private int _multiPV = 1;
+    /** Limits of the current or last search. */
+    private SearchLimits _limits;
+    /** True when a stop of an infinite or pondering search has been
+     *  requested. */
+    private boolean _stopRequested;
+}
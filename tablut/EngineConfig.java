@@ -0,0 +1,229 @@
+package tablut;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static tablut.Utils.*;
+
+/** Settings for an automated player: the kind of engine, search depth,
+ *  time and node budgets per move, time budget per game, number of best
+ *  lines to find, whether searches must be reproducible, number of
+ *  threads, and transposition-table size and, optionally, file (see
+ *  MappedTable).  Settings are written as a list of KEY=VALUE words
+ *  separated by blanks or commas, such as "engine=mcts movetime=200
+ *  threads=2 hash=64", "gametime=60000", or "nodes=20000 multipv=3
+ *  deterministic=true".  Engines are looked up by name in a registry,
+ *  which holds "ab" (AI, the default) and "mcts" (MCTS).
+ *  @author Andrew Kaplan
+ */
+class EngineConfig {
+
+    /** Name of the engine used unless another is given. */
+    static final String DEFAULT_ENGINE = "ab";
+
+    /** Search depth used unless another is given, in an untimed game. */
+    static final int DEFAULT_DEPTH = 2;
+
+    /** Constructors of each kind of engine, by name. */
+    private static final Map<String, BiFunction<Piece, Controller,
+                                                AutoPlayer>> ENGINES =
+        new LinkedHashMap<>();
+
+    static {
+        register("ab", AI::new);
+        register("mcts", MCTS::new);
+    }
+
+    /** Make the engine whose players are made by CONSTRUCTOR (given the
+     *  piece played and controller) available under NAME. */
+    static synchronized void register(String name,
+                                      BiFunction<Piece, Controller,
+                                                 AutoPlayer> constructor) {
+        ENGINES.put(name.toLowerCase(), constructor);
+    }
+
+    /** Return the names of the available engines. */
+    static synchronized List<String> engines() {
+        return new ArrayList<>(ENGINES.keySet());
+    }
+
+    /** The default settings: a search of depth DEFAULT_DEPTH, as used by
+     *  AI players in interactive games. */
+    EngineConfig() {
+    }
+
+    /** Return settings described by SPEC (a list of KEY=VALUE words),
+     *  starting from the defaults.  Throws IllegalArgumentException on a
+     *  bad setting. */
+    static EngineConfig parse(String spec) {
+        EngineConfig result = new EngineConfig();
+        for (String word : spec.trim().split("[\\s,]+")) {
+            if (!word.isEmpty()) {
+                result.set(word);
+            }
+        }
+        return result;
+    }
+
+    /** Apply SETTING, of the form KEY=VALUE. */
+    void set(String setting) {
+        int eq = setting.indexOf('=');
+        if (eq <= 0) {
+            throw error("bad engine setting: %s", setting);
+        }
+        String key = setting.substring(0, eq).toLowerCase(),
+            value = setting.substring(eq + 1);
+        try {
+            switch (key) {
+            case "engine":
+                value = value.toLowerCase();
+                if (!engines().contains(value)) {
+                    throw error("unknown engine: %s (known engines: %s)",
+                                value, String.join(", ", engines()));
+                }
+                _engine = value;
+                break;
+            case "depth":
+                _depth = Integer.parseInt(value);
+                break;
+            case "movetime":
+                _moveTime = Long.parseLong(value);
+                break;
+            case "gametime":
+                _gameTime = Long.parseLong(value);
+                break;
+            case "nodes":
+                _nodes = Long.parseLong(value);
+                break;
+            case "threads":
+                _threads = Integer.parseInt(value);
+                break;
+            case "hash":
+                _hash = Integer.parseInt(value);
+                break;
+            case "multipv":
+                _multiPV = Integer.parseInt(value);
+                break;
+            case "deterministic":
+                if (!value.matches("true|false")) {
+                    throw error("bad value in engine setting: %s", setting);
+                }
+                _deterministic = value.equals("true");
+                break;
+            case "hashfile":
+                _hashFile = value.isEmpty() ? null : value;
+                break;
+            default:
+                throw error("unknown engine setting: %s", key);
+            }
+        } catch (NumberFormatException excp) {
+            throw error("bad value in engine setting: %s", setting);
+        }
+    }
+
+    /** Return new limits for one move's search under these settings. */
+    SearchLimits limits() {
+        return new SearchLimits().setDepth(depth()).setMoveTime(_moveTime)
+            .setNodes(_nodes).setMultiPV(_multiPV)
+            .setDeterministic(_deterministic);
+    }
+
+    /** Return a new player of my kind of engine configured with these
+     *  settings, playing PIECE under the control of CONTROLLER (either of
+     *  which may be null for a template or a headless searcher). */
+    AutoPlayer newPlayer(Piece piece, Controller controller) {
+        BiFunction<Piece, Controller, AutoPlayer> constructor;
+        synchronized (EngineConfig.class) {
+            constructor = ENGINES.get(_engine);
+        }
+        AutoPlayer result = constructor.apply(piece, controller);
+        result.configure(this);
+        return result;
+    }
+
+    /** Return a new transposition table of my size, kept in my table file
+     *  if I have one. */
+    TranspositionTable newTable() {
+        if (_hashFile == null) {
+            return new TranspositionTable(_hash);
+        }
+        try {
+            return new MappedTable(Path.of(_hashFile), _hash);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open table file %s: %s", _hashFile,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the maximum search depth: the one given, or else
+     *  SearchLimits.MAX_DEPTH in a timed game, whose clock ends its
+     *  searches, and DEFAULT_DEPTH otherwise. */
+    private int depth() {
+        if (_depth > 0) {
+            return _depth;
+        }
+        return _gameTime > 0 ? SearchLimits.MAX_DEPTH : DEFAULT_DEPTH;
+    }
+
+    /** Return the name of my kind of engine. */
+    String engine() {
+        return _engine;
+    }
+
+    /** Return the time budget for each of my player's games in
+     *  milliseconds, or 0 if there is none. */
+    long gameTime() {
+        return _gameTime;
+    }
+
+    /** Return the number of searching threads. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Return the table (or other search memory) size in megabytes. */
+    int hash() {
+        return _hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("engine=%s depth=%d movetime=%d nodes=%d"
+                             + " threads=%d hash=%d", _engine, depth(),
+                             _moveTime, _nodes, _threads, _hash)
+            + (_gameTime > 0 ? " gametime=" + _gameTime : "")
+            + (_multiPV > 1 ? " multipv=" + _multiPV : "")
+            + (_deterministic ? " deterministic=true" : "")
+            + (_hashFile == null ? "" : " hashfile=" + _hashFile);
+    }
+
+    /** Name of the kind of engine. */
+    private String _engine = DEFAULT_ENGINE;
+    /** Maximum search depth, or 0 for the default (see depth()). */
+    private int _depth;
+    /** Time budget per move in milliseconds, or 0 for none. */
+    private long _moveTime;
+    /** Time budget per game in milliseconds, or 0 for none. */
+    private long _gameTime;
+    /** Node budget per move, or 0 for none. */
+    private long _nodes;
+    /** Number of best lines each search finds. */
+    private int _multiPV = 1;
+    /** True if searches must be reproducible (see
+     *  SearchLimits.deterministic). */
+    private boolean _deterministic;
+    /** Searching threads. */
+    private int _threads = 1;
+    /** Transposition table (or other search memory) size in
+     *  megabytes. */
+    private int _hash = TranspositionTable.DEFAULT_MEGABYTES;
+    /** File holding a persistent transposition table, or null for a table
+     *  in memory. */
+    private String _hashFile;
+}
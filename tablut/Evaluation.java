@@ -0,0 +1,183 @@
+package tablut;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static tablut.Piece.*;
+import static tablut.Utils.*;
+
+/** A static evaluation of positions as a weighted sum of features, all
+ *  from white's point of view, in hundredths of a piece.  The weights
+ *  may be read from a weights file, which has one line
+ *
+ *      NAME VALUE
+ *
+ *  for each of some of the features named in FEATURES (the others keep
+ *  their default weights), and may contain blank lines and comments
+ *  starting with "#".  Such files are written by Tuner.  The standard
+ *  evaluation, used by AIs unless told otherwise, takes its weights from
+ *  the file named by the system property WEIGHTS_PROPERTY, if it is set.
+ *  @author Andrew Kaplan
+ */
+class Evaluation {
+
+    /** Names of the features, in order: numbers of white and of black
+     *  pieces, distance from the king to the nearest edge, number of
+     *  unobstructed lines from the king to the edge, number of black
+     *  pieces next to the king, and a constant 1 (whose weight, which
+     *  does not affect the choice of moves, absorbs any advantage of one
+     *  side when tuning). */
+    static final List<String> FEATURES =
+        List.of("white_pieces", "black_pieces", "king_edge_distance",
+                "king_open_lines", "king_attackers", "bias");
+
+    /** Number of features. */
+    static final int NUM_FEATURES = FEATURES.size();
+
+    /** Weights used when no others are given: material only. */
+    static final int[] DEFAULT_WEIGHTS = { 100, -100, 0, 0, 0, 0 };
+
+    /** System property naming the weights file of the standard
+     *  evaluation. */
+    static final String WEIGHTS_PROPERTY = "tablut.weights";
+
+    /** An evaluation with the default weights. */
+    Evaluation() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /** An evaluation with weights WEIGHTS, one per feature. */
+    Evaluation(int[] weights) {
+        if (weights.length != NUM_FEATURES) {
+            throw error("wrong number of weights");
+        }
+        _weights = weights.clone();
+    }
+
+    /** Return the evaluation used by AIs unless they are given another.
+     *  If the weights file named by WEIGHTS_PROPERTY cannot be read, says
+     *  so on the standard error and uses the default weights. */
+    static Evaluation standard() {
+        return Standard.EVALUATION;
+    }
+
+    /** Holds the standard evaluation, which is loaded on first use. */
+    private static class Standard {
+        /** The standard evaluation. */
+        static final Evaluation EVALUATION = loadStandard();
+
+        /** Return the evaluation with the weights named by
+         *  WEIGHTS_PROPERTY, or the default if there are none. */
+        private static Evaluation loadStandard() {
+            String name = System.getProperty(WEIGHTS_PROPERTY);
+            if (name == null) {
+                return new Evaluation();
+            }
+            try {
+                return load(Path.of(name));
+            } catch (IOException | IllegalArgumentException excp) {
+                System.err.printf("Could not read weights file %s: %s%n",
+                                  name, excp.getMessage());
+                return new Evaluation();
+            }
+        }
+    }
+
+    /** Return the evaluation whose weights are in FILE. */
+    static Evaluation load(Path file) throws IOException {
+        int[] weights = DEFAULT_WEIGHTS.clone();
+        int lineNum = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNum += 1;
+            line = line.replaceFirst("#.*", "").trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            int k = FEATURES.indexOf(words[0].toLowerCase());
+            if (k < 0 || words.length != 2) {
+                throw error("bad weight in line %d", lineNum);
+            }
+            try {
+                weights[k] = Integer.parseInt(words[1]);
+            } catch (NumberFormatException excp) {
+                throw error("bad weight in line %d", lineNum);
+            }
+        }
+        return new Evaluation(weights);
+    }
+
+    /** Write my weights to OUT in the form read by load, preceded by the
+     *  comment line COMMENT, if it is not null. */
+    void write(PrintStream out, String comment) {
+        if (comment != null) {
+            out.printf("# %s%n", comment);
+        }
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            out.printf("%s %d%n", FEATURES.get(k), _weights[k]);
+        }
+    }
+
+    /** Return a copy of my weights. */
+    int[] weights() {
+        return _weights.clone();
+    }
+
+    /** Return the value of BOARD from white's point of view. */
+    int score(Board board) {
+        int[] features = new int[NUM_FEATURES];
+        features(board, features);
+        int score = 0;
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            score += _weights[k] * features[k];
+        }
+        return score;
+    }
+
+    /** Set FEATURES[k] to the value of feature k on BOARD, for each k. */
+    static void features(Board board, int[] features) {
+        Arrays.fill(features, 0);
+        features[5] = 1;
+        Square king = null;
+        for (int i = 0; i < Square.NUM_SQUARES; i += 1) {
+            Square sq = Square.sq(i);
+            Piece p = board.get(sq);
+            if (p == BLACK) {
+                features[1] += 1;
+            } else if (p != EMPTY) {
+                features[0] += 1;
+                if (p == KING) {
+                    king = sq;
+                }
+            }
+        }
+        if (king == null) {
+            return;
+        }
+        int last = Board.SIZE - 1;
+        features[2] = Math.min(Math.min(king.col(), last - king.col()),
+                               Math.min(king.row(), last - king.row()));
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square sq;
+            int steps;
+            for (steps = 1; (sq = king.rookMove(dir, steps)) != null
+                     && board.get(sq) == EMPTY; steps += 1) {
+                continue;
+            }
+            if (sq == null && steps > 1) {
+                features[3] += 1;
+            }
+            sq = king.rookMove(dir, 1);
+            if (sq != null && board.get(sq) == BLACK) {
+                features[4] += 1;
+            }
+        }
+    }
+
+    /** Weight of each feature. */
+    private final int[] _weights;
+}
@@ -0,0 +1,103 @@
+package tablut;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events emitted by the game and its AIs.  They cost
+ *  next to nothing unless a recording (for example, one started with
+ *  "jcmd PID JFR.start") enables them, and appear there under the
+ *  category "Tablut", alongside the JVM's own GC and allocation events.
+ *  @author Andrew Kaplan
+ */
+final class Events {
+
+    /** Board.makeMove emits a MakeMove event once in this many calls. */
+    static final int MAKE_MOVE_SAMPLE_INTERVAL = 1024;
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** One complete search by AI.search. */
+    @Name("tablut.Search")
+    @Label("Search")
+    @Category("Tablut")
+    @Description("A search for a move by an AI")
+    @StackTrace(false)
+    static final class Search extends Event {
+        /** Depth of the last completed iteration. */
+        @Label("Depth")
+        int depth;
+        /** Nodes searched, including helper threads. */
+        @Label("Nodes")
+        long nodes;
+        /** Move chosen. */
+        @Label("Best Move")
+        String bestMove;
+        /** Score of the best move, relative to the side to move. */
+        @Label("Score")
+        int score;
+        /** Number of searching threads. */
+        @Label("Threads")
+        int threads;
+    }
+
+    /** One iteration of iterative deepening within a Search. */
+    @Name("tablut.Iteration")
+    @Label("Search Iteration")
+    @Category("Tablut")
+    @StackTrace(false)
+    static final class Iteration extends Event {
+        /** Depth of this iteration. */
+        @Label("Depth")
+        int depth;
+        /** Nodes searched by this iteration. */
+        @Label("Nodes")
+        long nodes;
+        /** Best move after this iteration. */
+        @Label("Best Move")
+        String bestMove;
+        /** Score after this iteration, relative to the side to move. */
+        @Label("Score")
+        int score;
+        /** True iff the iteration was cut short by a stop or a budget. */
+        @Label("Aborted")
+        boolean aborted;
+    }
+
+    /** A sample of the calls to Board.makeMove, one in every
+     *  MAKE_MOVE_SAMPLE_INTERVAL.  Disabled by default, since even sampled
+     *  it is frequent during searches. */
+    @Name("tablut.MakeMove")
+    @Label("Make Move (sampled)")
+    @Category("Tablut")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MakeMove extends Event {
+        /** The move made. */
+        @Label("Move")
+        String move;
+        /** Number of pieces captured by the move. */
+        @Label("Captures")
+        int captures;
+    }
+
+    /** Processing of one command by Controller. */
+    @Name("tablut.Command")
+    @Label("Command")
+    @Category("Tablut")
+    @StackTrace(false)
+    static final class Command extends Event {
+        /** The command text. */
+        @Label("Command")
+        String command;
+        /** True iff the command was rejected. */
+        @Label("Failed")
+        boolean failed;
+    }
+}
@@ -0,0 +1,55 @@
+package tablut;
+
+/** The binary game-record format.  A record file is a sequence of game
+ *  records, each consisting of a header and a list of plies ending with
+ *  a terminator.  All numbers are big-endian.  The header is
+ *
+ *      int   MAGIC
+ *      byte  VERSION
+ *      byte  RULES
+ *      byte  flags: ANNOTATED, WHITE_AUTO, BLACK_AUTO
+ *      int   move limit
+ *      long  random seed
+ *
+ *  Each ply is a 2-byte Move.code(), followed, if the record is ANNOTATED,
+ *  by a 2-byte score (from white's point of view, clamped to a short, or
+ *  NO_SCORE) and a 4-byte thinking time in milliseconds.  The special
+ *  code UNDO takes back the last ply and has no annotation.  The
+ *  terminator is the code END followed by one byte: the ordinal of the
+ *  winning Piece, or that of EMPTY if the game was abandoned.
+ *  @author Andrew Kaplan
+ */
+class GameRecord {
+
+    /** Marks the start of each record: "TBLR" in ASCII. */
+    static final int MAGIC = 0x54424C52;
+
+    /** Version of this format. */
+    static final int VERSION = 1;
+
+    /** Identifies the rules of the games recorded (9x9 Tablut with the
+     *  capture rules of Board).  Changes to the rules that would alter
+     *  the replay of a record must change this number. */
+    static final int RULES = 1;
+
+    /** Flag bits in the header. */
+    static final int ANNOTATED = 1, WHITE_AUTO = 2, BLACK_AUTO = 4;
+
+    /** Special ply codes, distinct from any Move.code(). */
+    static final int END = 0xFFFF, UNDO = 0xFFFE;
+
+    /** Score recorded for a ply with no evaluation (such as a manual
+     *  move). */
+    static final int NO_SCORE = Short.MIN_VALUE;
+
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 4 + 8;
+
+    /** Size of one annotated and unannotated ply in bytes. */
+    static final int ANNOTATED_PLY_SIZE = 8, PLY_SIZE = 2;
+
+    /** Return SCORE clamped to the range recorded in annotations. */
+    static int clampScore(int score) {
+        return Math.max(NO_SCORE + 1, Math.min(Short.MAX_VALUE, score));
+    }
+}
@@ -0,0 +1,211 @@
+package tablut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static tablut.GameRecord.*;
+import static tablut.Piece.*;
+import static tablut.Utils.*;
+
+/** A reader of files of games in the binary GameRecord format.  The file
+ *  is memory-mapped (in windows of up to WINDOW_SIZE bytes, so files of
+ *  any size may be read) and plies are decoded directly from the mapping,
+ *  without copying.  A reader visits the records in order: next()
+ *  advances to the next record, after which the accessors describe it
+ *  and replay() plays it on a Board.
+ *  @author Andrew Kaplan
+ */
+class GameRecordReader implements Closeable {
+
+    /** Maximum size of the portion of the file mapped at once. */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /** Print a summary of the records in the files named ARGS, replaying
+     *  every game, together with the time taken. */
+    public static void main(String... args) {
+        for (String name : args) {
+            long start = System.nanoTime();
+            long games, plies, whiteWins, blackWins;
+            games = plies = whiteWins = blackWins = 0;
+            Board board = new Board();
+            try (GameRecordReader records =
+                 new GameRecordReader(Path.of(name))) {
+                while (records.next()) {
+                    records.replay(board);
+                    games += 1;
+                    plies += board.moveCount();
+                    if (records.winner() == WHITE) {
+                        whiteWins += 1;
+                    } else if (records.winner() == BLACK) {
+                        blackWins += 1;
+                    }
+                }
+            } catch (IOException | IllegalArgumentException excp) {
+                System.err.printf("%s: %s%n", name, excp.getMessage());
+                System.exit(1);
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %d games (white %d, black %d), %d plies"
+                              + " in %.2f s (%.0f plies/s)%n", name, games,
+                              whiteWins, blackWins, plies, secs,
+                              plies / Math.max(secs, 1e-9));
+        }
+    }
+
+    /** A reader of the records in FILE. */
+    GameRecordReader(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        _size = _channel.size();
+        _next = 0;
+    }
+
+    /** Advance to the next record, returning false if there is none.
+     *  Throws IllegalArgumentException if the record is malformed. */
+    boolean next() throws IOException {
+        if (_next >= _size) {
+            return false;
+        }
+        long pos = _next;
+        if (getInt(pos) != MAGIC || getByte(pos + 4) != VERSION) {
+            throw error("not a game record at offset %d", pos);
+        } else if (getByte(pos + 5) != RULES) {
+            throw error("game record at offset %d uses other rules", pos);
+        }
+        _flags = getByte(pos + 6);
+        _moveLimit = getInt(pos + 7);
+        _seed = getLong(pos + 11);
+        _plies = pos + HEADER_SIZE;
+        int plySize = annotated() ? ANNOTATED_PLY_SIZE : PLY_SIZE;
+        for (pos = _plies; true; pos += plySize) {
+            int code = getShort(pos);
+            if (code == END) {
+                break;
+            } else if (code == UNDO) {
+                pos -= plySize - PLY_SIZE;
+            }
+        }
+        int winner = getByte(pos + PLY_SIZE);
+        if (winner >= Piece.values().length) {
+            throw error("bad result in game record at offset %d", pos);
+        }
+        _winner = Piece.values()[winner];
+        _next = pos + PLY_SIZE + 1;
+        return true;
+    }
+
+    /** Set BOARD to the final position of the current record by playing
+     *  its moves from the initial position. */
+    void replay(Board board) throws IOException {
+        board.init();
+        board.setMoveLimit(_moveLimit);
+        int plySize = annotated() ? ANNOTATED_PLY_SIZE : PLY_SIZE;
+        for (long pos = _plies; true; pos += plySize) {
+            int code = getShort(pos);
+            if (code == END) {
+                return;
+            } else if (code == UNDO) {
+                board.undo();
+                pos -= plySize - PLY_SIZE;
+            } else {
+                Move move = Move.mv(code);
+                if (move == null || board.winner() != null) {
+                    throw error("bad move in game record at offset %d",
+                                pos);
+                }
+                board.makeMove(move);
+            }
+        }
+    }
+
+    /** Return the move limit of the current record. */
+    int moveLimit() {
+        return _moveLimit;
+    }
+
+    /** Return the random seed of the current record. */
+    long seed() {
+        return _seed;
+    }
+
+    /** Return true iff plies in the current record carry scores and
+     *  times. */
+    boolean annotated() {
+        return (_flags & ANNOTATED) != 0;
+    }
+
+    /** Return true iff SIDE was played by an automated player in the
+     *  current record. */
+    boolean automated(Piece side) {
+        return (_flags & (side == WHITE ? WHITE_AUTO : BLACK_AUTO)) != 0;
+    }
+
+    /** Return the winner of the current record, or EMPTY if the game was
+     *  abandoned. */
+    Piece winner() {
+        return _winner;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _map = null;
+        _channel.close();
+    }
+
+    /** Return the unsigned byte at offset POS in the file. */
+    private int getByte(long pos) throws IOException {
+        return map(pos, 1).get((int) (pos - _base)) & 0xff;
+    }
+
+    /** Return the unsigned 2-byte number at offset POS in the file. */
+    private int getShort(long pos) throws IOException {
+        return map(pos, 2).getShort((int) (pos - _base)) & 0xffff;
+    }
+
+    /** Return the 4-byte number at offset POS in the file. */
+    private int getInt(long pos) throws IOException {
+        return map(pos, 4).getInt((int) (pos - _base));
+    }
+
+    /** Return the 8-byte number at offset POS in the file. */
+    private long getLong(long pos) throws IOException {
+        return map(pos, 8).getLong((int) (pos - _base));
+    }
+
+    /** Return a mapping of the file that includes the LEN bytes at offset
+     *  POS, mapping a new window if needed. */
+    private MappedByteBuffer map(long pos, int len) throws IOException {
+        if (pos + len > _size) {
+            throw error("game record file is truncated");
+        }
+        if (_map == null || pos < _base || pos + len > _base + _map.limit()) {
+            _base = pos;
+            _map = _channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                Math.min(WINDOW_SIZE, _size - pos));
+        }
+        return _map;
+    }
+
+    /** The file being read. */
+    private final FileChannel _channel;
+    /** Size of the file. */
+    private final long _size;
+    /** The currently mapped window of the file, or null. */
+    private MappedByteBuffer _map;
+    /** File offset of the start of _map. */
+    private long _base;
+    /** File offsets of the next record and of the current record's
+     *  plies. */
+    private long _next, _plies;
+    /** Header flags of the current record. */
+    private int _flags;
+    /** Move limit of the current record. */
+    private int _moveLimit;
+    /** Random seed of the current record. */
+    private long _seed;
+    /** Winner of the current record. */
+    private Piece _winner;
+}
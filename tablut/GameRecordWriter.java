@@ -0,0 +1,121 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static tablut.GameRecord.*;
+import static tablut.Utils.*;
+
+/** A writer of games in the binary GameRecord format, one ply at a time,
+ *  so that games are recorded as they are played.
+ *  @author Andrew Kaplan
+ */
+class GameRecordWriter {
+
+    /** A writer appending records to the file named FILENAME, with
+     *  per-ply scores and times iff ANNOTATED. */
+    GameRecordWriter(String fileName, boolean annotated) throws IOException {
+        this(new FileOutputStream(fileName, true), annotated);
+    }
+
+    /** A writer of records to OUT, with per-ply scores and times iff
+     *  ANNOTATED. */
+    GameRecordWriter(OutputStream out, boolean annotated) {
+        _out = new DataOutputStream(new BufferedOutputStream(out));
+        _annotated = annotated;
+    }
+
+    /** Start recording a game with move limit LIMIT and random seed SEED.
+     *  WHITEAUTO and BLACKAUTO tell which sides are automated players.
+     *  Any game in progress is first ended as abandoned. */
+    void begin(int limit, long seed, boolean whiteAuto, boolean blackAuto) {
+        if (_inGame) {
+            end(null);
+        }
+        try {
+            _out.writeInt(MAGIC);
+            _out.writeByte(VERSION);
+            _out.writeByte(RULES);
+            _out.writeByte((_annotated ? ANNOTATED : 0)
+                           | (whiteAuto ? WHITE_AUTO : 0)
+                           | (blackAuto ? BLACK_AUTO : 0));
+            _out.writeInt(limit);
+            _out.writeLong(seed);
+        } catch (IOException excp) {
+            throw error("could not write game record: %s",
+                        excp.getMessage());
+        }
+        _inGame = true;
+    }
+
+    /** Return true iff a game has been begun and not yet ended. */
+    boolean inGame() {
+        return _inGame;
+    }
+
+    /** Record MOVE, which was chosen after MILLIS milliseconds with a
+     *  score of SCORE (or NO_SCORE). */
+    void move(Move move, int score, long millis) {
+        assert _inGame;
+        try {
+            _out.writeShort(move.code());
+            if (_annotated) {
+                _out.writeShort(score == NO_SCORE ? score
+                                : clampScore(score));
+                _out.writeInt((int) Math.min(Integer.MAX_VALUE, millis));
+            }
+        } catch (IOException excp) {
+            throw error("could not write game record: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Record that the last ply was taken back. */
+    void undo() {
+        assert _inGame;
+        try {
+            _out.writeShort(UNDO);
+        } catch (IOException excp) {
+            throw error("could not write game record: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** End the current game, if any, won by WINNER, or abandoned if
+     *  WINNER is null. */
+    void end(Piece winner) {
+        if (!_inGame) {
+            return;
+        }
+        try {
+            _out.writeShort(END);
+            _out.writeByte(winner == null ? Piece.EMPTY.ordinal()
+                           : winner.ordinal());
+        } catch (IOException excp) {
+            throw error("could not write game record: %s",
+                        excp.getMessage());
+        }
+        _inGame = false;
+    }
+
+    /** End any game in progress as abandoned and close the output. */
+    void close() {
+        end(null);
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            throw error("could not write game record: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Destination of records. */
+    private final DataOutputStream _out;
+    /** True iff plies carry scores and times. */
+    private final boolean _annotated;
+    /** True while a game is being recorded. */
+    private boolean _inGame;
+}
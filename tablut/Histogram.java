@@ -0,0 +1,106 @@
+package tablut;
+
+import java.util.Arrays;
+
+/** A histogram of non-negative long values in fixed memory, in the style
+ *  of HdrHistogram.  Values below SUB_BUCKETS are counted exactly; larger
+ *  ones fall into log-linear buckets: each power of two is divided into
+ *  SUB_BUCKETS / 2 equal parts, so that a reported percentile is within
+ *  about 3% of the true value.  Values above MAX_VALUE count as
+ *  MAX_VALUE.
+ *  @author Andrew Kaplan
+ */
+class Histogram {
+
+    /** Number of exactly counted small values, and twice the number of
+     *  buckets per power of two. */
+    static final int SUB_BUCKETS = 64;
+
+    /** Largest value tracked. */
+    static final long MAX_VALUE = (1L << 40) - 1;
+
+    /** Record VALUE once. */
+    void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        _counts[index(value)] += 1;
+        _total += 1;
+        _max = Math.max(_max, value);
+        _sum += value;
+    }
+
+    /** Add all values recorded in OTHER to me. */
+    void add(Histogram other) {
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] += other._counts[i];
+        }
+        _total += other._total;
+        _max = Math.max(_max, other._max);
+        _sum += other._sum;
+    }
+
+    /** Forget all recorded values. */
+    void clear() {
+        Arrays.fill(_counts, 0);
+        _total = _max = _sum = 0;
+    }
+
+    /** Return the number of values recorded. */
+    long count() {
+        return _total;
+    }
+
+    /** Return the largest value recorded (exactly), or 0 if none. */
+    long max() {
+        return _max;
+    }
+
+    /** Return the mean of the values recorded, or 0 if none. */
+    double mean() {
+        return _total == 0 ? 0.0 : (double) _sum / _total;
+    }
+
+    /** Return the smallest value V such that PERCENT percent of the
+     *  recorded values are at most about V, or 0 if there are none. */
+    long percentile(double percent) {
+        long rank = (long) Math.ceil(percent / 100.0 * _total);
+        rank = Math.max(1, Math.min(rank, _total));
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i += 1) {
+            seen += _counts[i];
+            if (seen >= rank && _counts[i] > 0) {
+                return Math.min(highestValue(i), _max);
+            }
+        }
+        return 0;
+    }
+
+    /** Return the index of the bucket counting VALUE. */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (HALF_BITS);
+        return SUB_BUCKETS + (shift - 1) * HALF
+            + (int) ((value >> shift) - HALF);
+    }
+
+    /** Return the largest value counted by bucket INDEX. */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return (sub << shift) + (1L << shift) - 1;
+    }
+
+    /** Half of SUB_BUCKETS, and its base-2 logarithm. */
+    private static final int
+        HALF = SUB_BUCKETS / 2,
+        HALF_BITS = Integer.numberOfTrailingZeros(HALF);
+
+    /** Bucket counts. */
+    private final long[] _counts = new long[index(MAX_VALUE) + 1];
+    /** Number of values, largest value, and sum of values recorded. */
+    private long _total, _max, _sum;
+}
@@ -0,0 +1,98 @@
+package tablut;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/** A reader of lines of commands from an input stream through a large
+ *  NIO buffer.  Commands are ASCII, so bytes are taken as characters
+ *  directly (as in ISO-8859-1) rather than going through a decoder, and
+ *  lines are split by hand rather than with a Scanner's patterns.  A
+ *  read returns as soon as some input is available, so interactive use
+ *  is unaffected.  Before waiting for more input, a reader runs a given
+ *  action, typically flushing buffered output such as a prompt.  As with
+ *  a Scanner, an IOException is treated as the end of input.
+ *  @author Andrew Kaplan
+ */
+class LineReader {
+
+    /** Size of the input buffer in bytes. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A reader of lines from INPUT. */
+    LineReader(InputStream input) {
+        this(input, () -> { });
+    }
+
+    /** A reader of lines from INPUT that runs BEFOREREAD whenever it must
+     *  wait for more input. */
+    LineReader(InputStream input, Runnable beforeRead) {
+        _channel = Channels.newChannel(input);
+        _beforeRead = beforeRead;
+        _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        _buffer.flip();
+    }
+
+    /** Return the next line of input, without its line terminator ("\n",
+     *  "\r\n", or end of input), or null if there is no more input. */
+    String readLine() {
+        _line.setLength(0);
+        while (true) {
+            while (_buffer.hasRemaining()) {
+                char c = (char) (_buffer.get() & 0xff);
+                if (c == '\n') {
+                    return line();
+                }
+                _line.append(c);
+            }
+            if (!fill()) {
+                return _line.length() == 0 && _atEnd ? null : line();
+            }
+        }
+    }
+
+    /** Return the line accumulated so far, less any trailing carriage
+     *  return. */
+    private String line() {
+        int n = _line.length();
+        if (n > 0 && _line.charAt(n - 1) == '\r') {
+            n -= 1;
+        }
+        return _line.substring(0, n);
+    }
+
+    /** Read more input into the buffer, returning false at end of
+     *  input. */
+    private boolean fill() {
+        if (_atEnd) {
+            return false;
+        }
+        _beforeRead.run();
+        _buffer.clear();
+        try {
+            int n;
+            do {
+                n = _channel.read(_buffer);
+            } while (n == 0);
+            _atEnd = n < 0;
+        } catch (IOException excp) {
+            _atEnd = true;
+        } finally {
+            _buffer.flip();
+        }
+        return !_atEnd;
+    }
+
+    /** The source of input. */
+    private final ReadableByteChannel _channel;
+    /** Run before reading more input. */
+    private final Runnable _beforeRead;
+    /** Input read but not yet returned, between position and limit. */
+    private final ByteBuffer _buffer;
+    /** The line being assembled. */
+    private final StringBuilder _line = new StringBuilder();
+    /** True once the end of input has been reached. */
+    private boolean _atEnd;
+}
@@ -0,0 +1,78 @@
+package tablut;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/** A writer of log lines on a background thread, so that logging costs
+ *  the game thread no more than a queue insertion.  Lines are passed
+ *  through a bounded queue: if the writer falls behind by QUEUE_CAPACITY
+ *  lines, callers wait for it.  The underlying stream is flushed only
+ *  when the queue runs dry and on closing.
+ *  @author Andrew Kaplan
+ */
+class LogWriter {
+
+    /** Maximum number of lines waiting to be written. */
+    static final int QUEUE_CAPACITY = 4096;
+
+    /** Queued to mark the end of the log.  Compared by identity, so no
+     *  logged line can be mistaken for it. */
+    private static final String END = new String("");
+
+    /** A writer of lines to OUT, which it owns. */
+    LogWriter(PrintStream out) {
+        _out = out;
+        _thread = new Thread(this::run, "tablut-log");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /** Queue LINE to be written, followed by a line terminator. */
+    void println(String line) {
+        try {
+            _queue.put(line);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Write all queued lines, then close the underlying stream.  No
+     *  lines may be written afterwards. */
+    void close() {
+        println(END);
+        try {
+            _thread.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Body of the writing thread. */
+    private void run() {
+        try {
+            while (true) {
+                String line = _queue.take();
+                if (line == END) {
+                    break;
+                }
+                _out.println(line);
+                if (_queue.isEmpty()) {
+                    _out.flush();
+                }
+            }
+        } catch (InterruptedException excp) {
+            /* Stop writing. */
+        } finally {
+            _out.close();
+        }
+    }
+
+    /** Destination of the log. */
+    private final PrintStream _out;
+    /** Lines waiting to be written. */
+    private final BlockingQueue<String> _queue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /** The writing thread. */
+    private final Thread _thread;
+}
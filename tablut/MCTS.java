@@ -0,0 +1,461 @@
+package tablut;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static tablut.Piece.*;
+
+/** A Player that chooses moves by Monte Carlo tree search (UCT): it
+ *  repeatedly descends a tree of positions from the current one, choosing
+ *  at each node the child with the best upper confidence bound on its
+ *  winning rate, adds the children of the node where it stops, finishes
+ *  the game from there with quick, nearly random moves (a playout), and
+ *  credits the result to every node on the way.  The move chosen is the
+ *  most visited one.
+ *
+ *  The tree lives in an arena of parallel arrays allocated once and
+ *  reused by each search, and playouts make and undo moves on one Board
+ *  per thread, so searching allocates nothing.  Several threads may run
+ *  playouts in the same tree.  A thread counts its visit to each node on
+ *  the way down rather than on the way back, so that until its result
+ *  arrives the node appears to have lost (a "virtual loss"), steering
+ *  other threads toward other lines.
+ *  @author Andrew Kaplan
+ */
+class MCTS extends AutoPlayer {
+
+    /** Playouts per move when a search has no node or time budget. */
+    static final int DEFAULT_PLAYOUTS = 5000;
+
+    /** Default arena size in megabytes. */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /** Bytes used by one node of the arena. */
+    static final int NODE_BYTES = 5 * Integer.BYTES;
+
+    /** Weight of the exploration term of the upper confidence bound. */
+    static final double EXPLORATION = 1.0;
+
+    /** Visits a node other than the root receives before its children are
+     *  added. */
+    static final int EXPAND_VISITS = 2;
+
+    /** Moves after which a playout is ended and decided by the static
+     *  evaluation. */
+    static final int PLAYOUT_LIMIT = 200;
+
+    /** Playouts between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /** Values of _children[k] for a node k whose children have not been
+     *  added, are being added by some thread, or will never be added
+     *  (because the game is over there or the arena is full).  Any other
+     *  value is the index of the first child; the root, with index 0, is
+     *  never a child. */
+    private static final int UNEXPANDED = 0, EXPANDING = -1, LEAF = -2;
+
+    /** Atomic access to the elements of int arrays. */
+    private static final VarHandle INTS =
+        MethodHandles.arrayElementVarHandle(int[].class);
+
+    /** Threads running playouts for all searches besides the searching
+     *  thread itself. */
+    private static final ExecutorService HELPERS =
+        Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "tablut-playouts");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** A new MCTS player with no piece or controller (intended to produce
+     *  a template). */
+    MCTS() {
+        this(null, null);
+    }
+
+    /** A new MCTS player playing PIECE under control of CONTROLLER. */
+    MCTS(Piece piece, Controller controller) {
+        super(piece, controller);
+    }
+
+    @Override
+    Player create(Piece piece, Controller controller) {
+        MCTS result = new MCTS(piece, controller);
+        result.configure(config());
+        return result;
+    }
+
+    /** Uses the thread count of CONFIG and its table size as the size of
+     *  my arena. */
+    @Override
+    void configure(EngineConfig config) {
+        setThreads(config.threads());
+        setMemory(config.hash());
+        super.configure(config);
+    }
+
+    @Override
+    Move findMove() {
+        return search(board(), limits());
+    }
+
+    /** Return the most visited move found by searching BOARD (which is
+     *  not modified) within the node (playout) budget of LIMITS and the
+     *  time it allots the move (see SearchLimits.targetMillis), or for
+     *  DEFAULT_PLAYOUTS playouts if it has neither and is not infinite.
+     *  A move that wins at once is returned without searching.  Returns
+     *  null if the side to move has no legal move.  Another thread
+     *  may end the search early with stop(). */
+    @Override
+    Move search(Board board, SearchLimits limits) {
+        _limits = limits;
+        _moveMillis = limits.targetMillis(board);
+        _playoutBudget = limits.nodes() > 0 ? limits.nodes()
+            : _moveMillis > 0 && !limits.deterministic()
+              || limits.infinite() ? Long.MAX_VALUE
+            : DEFAULT_PLAYOUTS;
+        _startTime = System.nanoTime();
+        _stopped = false;
+        _playouts.set(0);
+        _maxDepth.set(0);
+        startTree();
+        Move win = winningMove(board);
+        if (win != null) {
+            _stats.clear();
+            return win;
+        }
+
+        List<Future<?>> helpers = new ArrayList<>();
+        int threads = limits.deterministic() ? 1 : _threads;
+        for (int i = 1; i < threads; i += 1) {
+            Worker helper = new Worker(board, i);
+            helpers.add(HELPERS.submit(helper::run));
+        }
+        new Worker(board, 0).run();
+        _stopped = true;
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IllegalStateException(excp);
+            }
+        }
+
+        Move best = null;
+        int bestChild = -1;
+        int first = _children[0];
+        for (int c = first; first > 0 && c < first + _counts[0]; c += 1) {
+            if (bestChild == -1 || _visits[c] > _visits[bestChild]) {
+                bestChild = c;
+            }
+        }
+        if (bestChild != -1) {
+            best = Move.mv(_moves[bestChild]);
+        } else {
+            List<Move> moves = board.winner() == null
+                ? board.legalMoves(board.turn()) : null;
+            best = moves == null ? null : moves.get(0);
+        }
+        _stats.clear();
+        _stats.countNodes(_playouts.get());
+        int score = 0;
+        if (bestChild != -1 && _visits[bestChild] > 0) {
+            score = (int) (200L * _wins[bestChild] / _visits[bestChild]
+                           - 100);
+            score *= board.turn() == WHITE ? 1 : -1;
+        }
+        _stats.iterationDone(_maxDepth.get(), best, score, _playouts.get(),
+                             elapsedMillis());
+        return best;
+    }
+
+    /** Return a move that wins at once in BOARD (which is restored), or
+     *  null if there is none. */
+    private static Move winningMove(Board board) {
+        if (board.winner() != null || board.moveLimitReached()) {
+            return null;
+        }
+        Piece mover = board.turn();
+        List<Move> moves = board.legalMoves(mover);
+        for (int i = 0; moves != null && i < moves.size(); i += 1) {
+            board.makeMove(moves.get(i));
+            Piece winner = board.winner();
+            board.undo();
+            if (winner == mover) {
+                return moves.get(i);
+            }
+        }
+        return null;
+    }
+
+    /** Empty the arena, allocating it if needed, leaving only the root. */
+    private void startTree() {
+        int capacity = (int) Math.min(Integer.MAX_VALUE / 2,
+                                      Math.max(Board.MAX_MOVES + 1,
+                                               (long) _megabytes
+                                               * (1 << 20) / NODE_BYTES));
+        if (_moves == null || _moves.length != capacity) {
+            _moves = new int[capacity];
+            _children = new int[capacity];
+            _counts = new int[capacity];
+            _visits = new int[capacity];
+            _wins = new int[capacity];
+        }
+        _children[0] = UNEXPANDED;
+        _counts[0] = _visits[0] = _wins[0] = 0;
+        _size.set(1);
+    }
+
+    /** Runs playouts on one thread of a search. */
+    private class Worker {
+
+        /** A worker searching BOARD (which it copies), whose random
+         *  choices are determined by SEED. */
+        Worker(Board board, int seed) {
+            _board = new Board(board);
+            _random = new Random(board.hash() * 31 + seed);
+        }
+
+        /** Run playouts until the search is stopped or out of budget. */
+        void run() {
+            while (!_stopped) {
+                playout();
+                long n = _playouts.incrementAndGet();
+                if (n >= _playoutBudget
+                    || n % CLOCK_INTERVAL == 0 && outOfTime()) {
+                    _stopped = true;
+                }
+            }
+        }
+
+        /** Descend the tree from the root, extend it, finish the game at
+         *  random, and credit the result to the nodes visited. */
+        private void playout() {
+            Board b = _board;
+            Piece rootTurn = b.turn();
+            int node = 0, depth = 0;
+            INTS.getAndAdd(_visits, 0, 1);
+            while (b.winner() == null && !b.moveLimitReached()
+                   && depth < _path.length - 1) {
+                int first = (int) INTS.getAcquire(_children, node);
+                if (first == UNEXPANDED
+                    && (node == 0 || _visits[node] >= EXPAND_VISITS)) {
+                    first = expand(node);
+                }
+                if (first <= 0) {
+                    break;
+                }
+                node = select(node, first);
+                INTS.getAndAdd(_visits, node, 1);
+                b.makeMove(Move.mv(_moves[node]));
+                depth += 1;
+                _path[depth] = node;
+            }
+            _maxDepth.accumulateAndGet(depth, Math::max);
+            Piece winner = finish();
+            for (int k = depth; k >= 1; k -= 1) {
+                Piece mover = k % 2 == 1 ? rootTurn : rootTurn.opponent();
+                if (winner == mover) {
+                    INTS.getAndAdd(_wins, _path[k], 1);
+                }
+                b.undo();
+            }
+        }
+
+        /** Add the children of NODE, whose position is on my board, to the
+         *  tree unless another thread is already doing so, and return the
+         *  resulting value of _children[NODE]. */
+        private int expand(int node) {
+            if (!INTS.compareAndSet(_children, node, UNEXPANDED, EXPANDING)) {
+                return (int) INTS.getAcquire(_children, node);
+            }
+            int n = _board.legalMoves(_buffer);
+            int first = LEAF;
+            if (n > 0 && _size.get() <= _moves.length - n) {
+                first = _size.getAndAdd(n);
+                if (first > _moves.length - n) {
+                    first = LEAF;
+                }
+            }
+            if (first != LEAF) {
+                for (int i = 0; i < n; i += 1) {
+                    int j = i + _random.nextInt(n - i);
+                    Move m = _buffer[j];
+                    _buffer[j] = _buffer[i];
+                    _buffer[i] = m;
+                    int c = first + i;
+                    _moves[c] = m.code();
+                    _children[c] = UNEXPANDED;
+                    _counts[c] = _visits[c] = _wins[c] = 0;
+                }
+                _counts[node] = n;
+            }
+            INTS.setRelease(_children, node, first);
+            return first;
+        }
+
+        /** Return the child of NODE, whose children start at FIRST, with the
+         *  greatest upper confidence bound on its winning rate.  Children
+         *  not yet visited come first, in their (random) order. */
+        private int select(int node, int first) {
+            double logVisits = Math.log(Math.max(1, _visits[node]));
+            int best = first;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (int c = first; c < first + _counts[node]; c += 1) {
+                int visits = _visits[c];
+                if (visits == 0) {
+                    return c;
+                }
+                double bound = (double) _wins[c] / visits
+                    + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (bound > bestBound) {
+                    best = c;
+                    bestBound = bound;
+                }
+            }
+            return best;
+        }
+
+        /** Play out the game on my board with quick moves, and return the
+         *  winner, restoring the board.  White always takes a move of the
+         *  king to the edge when it has one; otherwise moves are random.
+         *  Games still going after PLAYOUT_LIMIT moves go to the side the
+         *  static evaluation favors. */
+        private Piece finish() {
+            Board b = _board;
+            Piece winner;
+            int plies;
+            for (plies = 0; true; plies += 1) {
+                if (b.winner() != null) {
+                    winner = b.winner();
+                    break;
+                } else if (b.moveLimitReached()) {
+                    winner = b.turn().opponent();
+                    break;
+                } else if (plies == PLAYOUT_LIMIT) {
+                    winner = _evaluation.score(b) > 0 ? WHITE : BLACK;
+                    break;
+                }
+                int n = b.legalMoves(_buffer);
+                if (n == 0) {
+                    winner = b.turn().opponent();
+                    break;
+                }
+                b.makeMove(choose(n));
+            }
+            for (; plies > 0; plies -= 1) {
+                b.undo();
+            }
+            return winner;
+        }
+
+        /** Return the move to play in a playout from among the first N
+         *  moves in _buffer, which are legal on my board. */
+        private Move choose(int n) {
+            if (_board.turn() == WHITE) {
+                for (int i = 0; i < n; i += 1) {
+                    Move m = _buffer[i];
+                    if (m.to().isEdge() && _board.get(m.from()) == KING) {
+                        return m;
+                    }
+                }
+            }
+            return _buffer[_random.nextInt(n)];
+        }
+
+        /** My copy of the position searched, which is restored after each
+         *  playout. */
+        private final Board _board;
+        /** Source of random choices. */
+        private final Random _random;
+        /** Legal moves of the current position. */
+        private final Move[] _buffer = new Move[Board.MAX_MOVES];
+        /** _path[k] is the node at depth k of the current descent. */
+        private final int[] _path = new int[2 * Board.MAX_MOVES];
+    }
+
+    /** Return true iff the time allotted to the current search is used
+     *  up.  Searches that are infinite, pondering, or deterministic never
+     *  run out of time. */
+    private boolean outOfTime() {
+        return _moveMillis > 0 && !_limits.infinite()
+            && !_limits.ponder() && !_limits.deterministic()
+            && elapsedMillis() >= _moveMillis;
+    }
+
+    /** Return milliseconds since the start of the current search. */
+    long elapsedMillis() {
+        return (System.nanoTime() - _startTime) / 1_000_000;
+    }
+
+    @Override
+    void stop() {
+        _stopped = true;
+    }
+
+    @Override
+    void reset() {
+        _stopped = false;
+    }
+
+    @Override
+    SearchStats statistics() {
+        return _stats.copy();
+    }
+
+    /** Run playouts on THREADS threads (at least 1). */
+    void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Use an arena of about MEGABYTES megabytes. */
+    void setMemory(int megabytes) {
+        _megabytes = Math.max(1, megabytes);
+    }
+
+    /** Evaluate positions with EVALUATION when playouts run long. */
+    void setEvaluation(Evaluation evaluation) {
+        _evaluation = evaluation;
+    }
+
+    /** Limits on the current search. */
+    private SearchLimits _limits;
+    /** Milliseconds allotted to the current search, or 0 for no limit. */
+    private long _moveMillis;
+    /** Playouts allowed to the current search. */
+    private long _playoutBudget;
+    /** Value of System.nanoTime() when the current search began. */
+    private long _startTime;
+    /** True when the current search should end. */
+    private volatile boolean _stopped;
+    /** Playouts completed by the current or last search. */
+    private final AtomicLong _playouts = new AtomicLong();
+    /** Greatest depth of the tree reached by the current or last
+     *  search. */
+    private final AtomicInteger _maxDepth = new AtomicInteger();
+    /** Counters for the last search. */
+    private final SearchStats _stats = new SearchStats();
+    /** Number of threads running playouts. */
+    private int _threads = 1;
+    /** Size of the arena in megabytes. */
+    private int _megabytes = DEFAULT_MEGABYTES;
+    /** Static evaluation of positions. */
+    private Evaluation _evaluation = Evaluation.standard();
+
+    /** The arena: for each node k, the code of the move leading to it, the
+     *  index of its first child (or UNEXPANDED, EXPANDING, or LEAF), its
+     *  number of children, its visits, and the number of those visits
+     *  won by the side that made _moves[k]. */
+    private int[] _moves, _children, _counts, _visits, _wins;
+    /** Number of nodes of the arena in use. */
+    private final AtomicInteger _size = new AtomicInteger();
+}
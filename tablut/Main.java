@@ -1,11 +1,14 @@
 package tablut;
 
 import java.util.List;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 
+import static tablut.Piece.*;
 import static tablut.Utils.error;
 
 import ucb.util.CommandArgs;
@@ -15,25 +18,51 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** The greeting printed at the start of each session. */
+    static final String VERSION = "Tablut 61B, staff version 1.0";
+
+    /** Size of the buffer for the standard output (or OUTPUT file). */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /** The main program.  ARGS may contain the option --display, or
+     *  --server=ADDRESS to host games on a socket instead.  The options
+     *  --engine, --white, and --black give the engine settings (see
+     *  EngineConfig) of automated players of both sides, white, and
+     *  black. */
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --testing --strict --log={0,1} --={0,2}",
+            new CommandArgs("--display --testing --strict --log={0,1}"
+                            + " --record={0,1} --annotate"
+                            + " --server={0,1} --threads={0,1}"
+                            + " --engine={0,1} --white={0,1} --black={0,1}"
+                            + " --={0,2}",
                             args);
         if (!options.ok()) {
             System.err.println("Usage: java tablut.Main [--display]"
-                               + " [--log=FILE] [--strict] [INPUT [OUTPUT]]");
+                               + " [--log=FILE] [--record=FILE [--annotate]]"
+                               + " [--engine=SETTINGS] [--white=SETTINGS]"
+                               + " [--black=SETTINGS] [--strict]"
+                               + " [INPUT [OUTPUT]]");
+            System.err.println("       java tablut.Main --server=PORT"
+                               + " [--threads=N]");
+            System.err.println("       java tablut.Main --server=unix:PATH"
+                               + " [--threads=N]");
             System.exit(1);
         }
 
+        if (options.contains("--server")) {
+            serve(options);
+            return;
+        }
+
         List<String> files = options.get("--");
+        FileOutputStream out = new FileOutputStream(FileDescriptor.out);
         if (!files.isEmpty()) {
             try {
                 System.setIn(new FileInputStream(files.get(0)));
                 if (files.size() > 1) {
-                    FileOutputStream out = new FileOutputStream(files.get(1));
-                    System.setOut(new PrintStream(out, true));
+                    out = new FileOutputStream(files.get(1));
                 }
             } catch (IOException excp) {
                 System.err.printf("Could not open file: %s%n",
@@ -48,8 +77,17 @@ public class Main {
             }
         }
 
-        Controller control = getController(options);
-        System.out.println("Tablut 61B, staff version 1.0");
+        System.setOut(new PrintStream(
+            new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE), false));
+        Controller control;
+        try {
+            control = getController(options);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.out.println(VERSION);
 
         try {
             control.play();
@@ -57,12 +95,28 @@ public class Main {
                 System.exit(0);
             }
         } catch (IllegalStateException excp) {
+            System.out.flush();
             System.err.printf("Internal error: %s%n", excp.getMessage());
             System.exit(1);
         }
 
     }
 
+    /** Host games on the socket given by OPTIONS until terminated. */
+    private static void serve(CommandArgs options) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            new Server(options.getFirst("--server"), threads).serve();
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Could not start server: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
@@ -90,13 +144,39 @@ public class Main {
         log = null;
         if (options.contains("--log")) {
             try {
-                log = new PrintStream(options.getFirst("--log"));
+                log = new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream(options.getFirst("--log"))));
             } catch (IOException excp) {
                 throw error("Could not open log file");
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer,
-                              new AI(), options.contains("--strict"));
+        Player autoPlayer = new AI();
+        if (options.contains("--engine")) {
+            autoPlayer = EngineConfig.parse(options.getFirst("--engine"))
+                .newPlayer(null, null);
+        }
+
+        Controller control =
+            new Controller(view, log, reporter, manualPlayer,
+                           autoPlayer, options.contains("--strict"));
+        if (options.contains("--white")) {
+            control.setAutoPlayerTemplate(WHITE, EngineConfig.parse(
+                options.getFirst("--white")).newPlayer(null, null));
+        }
+        if (options.contains("--black")) {
+            control.setAutoPlayerTemplate(BLACK, EngineConfig.parse(
+                options.getFirst("--black")).newPlayer(null, null));
+        }
+        if (options.contains("--record")) {
+            try {
+                control.setRecord(new GameRecordWriter(
+                    options.getFirst("--record"),
+                    options.contains("--annotate")));
+            } catch (IOException excp) {
+                throw error("Could not open game record file");
+            }
+        }
+        return control;
     }
 }
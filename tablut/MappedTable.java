@@ -0,0 +1,218 @@
+package tablut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static tablut.Utils.*;
+
+/** A transposition table kept in a file, which is memory-mapped so that
+ *  its entries live outside the Java heap and survive the program.  A
+ *  later run (or another process using the same file at the same time)
+ *  starts with every result already found.  Entries are stored as in
+ *  TranspositionTable, so concurrent writers at worst make an entry fail
+ *  to match.  The file starts with a header of HEADER_SIZE bytes:
+ *
+ *      int   MAGIC
+ *      int   FORMAT_VERSION (layout of entries)
+ *      long  fingerprint of the hashing scheme (see hashScheme)
+ *      int   GameRecord.RULES
+ *      long  number of entries
+ *
+ *  followed by the entries, each a key word and a data word, in native
+ *  byte order.  A file whose header matches these values keeps its
+ *  entries and its number of entries, whatever size is requested, since
+ *  other programs may have mapped all of it.  Any other file (such as a
+ *  new one) gets a new header for the requested size, and its entries are
+ *  emptied, so that a table is never reused under a different hash
+ *  scheme or rules.  A file is never truncated, so that the mappings of
+ *  other programs sharing it stay valid.
+ *  @author Andrew Kaplan
+ */
+class MappedTable extends TranspositionTable {
+
+    /** Marks a table file: "TBTT" in ASCII. */
+    static final int MAGIC = 0x54425454;
+
+    /** Version of the layout of entries. */
+    static final int FORMAT_VERSION = 1;
+
+    /** Size of the header, which is padded to keep entries page-aligned. */
+    static final int HEADER_SIZE = 4096;
+
+    /** Bytes at the start of the header that must match for a file's
+     *  entries to be used: all fields but the number of entries. */
+    private static final int SIGNATURE_SIZE = 20;
+
+    /** Most entries in a table. */
+    private static final long MAX_ENTRIES = 1L << 30;
+
+    /** Log base 2 of the number of entries mapped by one buffer. */
+    static final int CHUNK_BITS = 26;
+
+    /** A table kept in FILE, created if necessary to occupy about
+     *  MEGABYTES megabytes.  A compatible existing table keeps its size. */
+    MappedTable(Path file, int megabytes) throws IOException {
+        super(megabytes, false);
+        _file = file;
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+        try {
+            resize(megabytes);
+        } catch (IllegalArgumentException excp) {
+            _channel.close();
+            throw excp;
+        }
+    }
+
+    @Override
+    boolean isPersistent() {
+        return true;
+    }
+
+    /** Return the file holding my entries. */
+    Path file() {
+        return _file;
+    }
+
+    /** Map the entries of my file and return their number: those of a
+     *  compatible table already in the file, or else ENTRIES, emptied,
+     *  under a new header.  The check and any rewriting are done holding
+     *  a lock on the file, so that programs opening it at once agree. */
+    @Override
+    int allocate(int entries) {
+        boolean stale;
+        try {
+            synchronized (MappedTable.class) {
+                FileLock lock = _channel.lock();
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    writeHeader(header, entries);
+                    ByteBuffer found = ByteBuffer.allocate(HEADER_SIZE);
+                    _channel.read(found, 0);
+                    long count = found.getLong(SIGNATURE_SIZE);
+                    boolean fresh = !found.limit(SIGNATURE_SIZE).position(0)
+                        .equals(header.limit(SIGNATURE_SIZE).position(0))
+                        || count <= 0 || count > MAX_ENTRIES
+                        || Long.bitCount(count) != 1;
+                    stale = fresh && _channel.size() > HEADER_SIZE;
+                    if (fresh) {
+                        _channel.write(header.clear(), 0);
+                    } else {
+                        entries = (int) count;
+                    }
+                    long size = HEADER_SIZE + (long) entries * ENTRY_BYTES;
+                    if (_channel.size() < size) {
+                        _channel.write(ByteBuffer.allocate(1), size - 1);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+            int chunkEntries = Math.min(entries, 1 << CHUNK_BITS);
+            _chunks = new MappedByteBuffer[(entries + chunkEntries - 1)
+                                           / chunkEntries];
+            for (int k = 0; k < _chunks.length; k += 1) {
+                long start = HEADER_SIZE
+                    + ((long) k << CHUNK_BITS) * ENTRY_BYTES;
+                _chunks[k] = _channel.map(FileChannel.MapMode.READ_WRITE,
+                                          start,
+                                          (long) chunkEntries * ENTRY_BYTES);
+                _chunks[k].order(ByteOrder.nativeOrder());
+            }
+        } catch (IOException excp) {
+            throw error("could not map table file %s: %s", _file,
+                        excp.getMessage());
+        }
+        if (stale) {
+            clearEntries();
+        }
+        return entries;
+    }
+
+    /** Fill HEADER with the header of a table of ENTRIES entries. */
+    private static void writeHeader(ByteBuffer header, int entries) {
+        header.putInt(MAGIC).putInt(FORMAT_VERSION)
+            .putLong(hashScheme())
+            .putInt(GameRecord.RULES).putLong(entries);
+        header.position(HEADER_SIZE);
+    }
+
+    /** Return a fingerprint of the keys from which Board computes hashes,
+     *  which changes whenever they do. */
+    private static long hashScheme() {
+        long result = Board.BLACK_TO_MOVE;
+        for (long[] keys : Board.ZOBRIST) {
+            for (long key : keys) {
+                result = result * 31 + key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    void clearEntries() {
+        for (MappedByteBuffer chunk : _chunks) {
+            for (int i = 0; i < chunk.limit(); i += Long.BYTES) {
+                chunk.putLong(i, 0);
+            }
+        }
+    }
+
+    @Override
+    long keyAt(int i) {
+        return _chunks[i >>> CHUNK_BITS].getLong(offset(i));
+    }
+
+    @Override
+    long dataAt(int i) {
+        return _chunks[i >>> CHUNK_BITS].getLong(offset(i) + Long.BYTES);
+    }
+
+    @Override
+    void setEntry(int i, long key, long data) {
+        MappedByteBuffer chunk = _chunks[i >>> CHUNK_BITS];
+        int offset = offset(i);
+        chunk.putLong(offset, key);
+        chunk.putLong(offset + Long.BYTES, data);
+    }
+
+    /** Return the offset of entry I within its chunk. */
+    private static int offset(int i) {
+        return (i & ((1 << CHUNK_BITS) - 1)) * ENTRY_BYTES;
+    }
+
+    /** Close my file.  My entries stay mapped until I am no longer
+     *  used. */
+    @Override
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw error("could not close table file %s: %s", _file,
+                        excp.getMessage());
+        }
+    }
+
+    /** Write my entries to the file now, rather than whenever the
+     *  operating system chooses. */
+    void force() {
+        for (MappedByteBuffer chunk : _chunks) {
+            chunk.force();
+        }
+    }
+
+    /** The file holding my entries. */
+    private final Path _file;
+    /** Channel to _file. */
+    private final FileChannel _channel;
+    /** Mappings of consecutive ranges of 2**CHUNK_BITS entries (or fewer,
+     *  if that is all there are) of the file. */
+    private MappedByteBuffer[] _chunks;
+}
@@ -0,0 +1,104 @@
+package tablut;
+
+/** The running score of a match between two engines, from the point of
+ *  view of the first, with an Elo estimate and a sequential probability
+ *  ratio test (SPRT).  Tablut games cannot be drawn, so each game is
+ *  simply a win or a loss.
+ *  @author Andrew Kaplan
+ */
+class MatchScore {
+
+    /** Record one game, which the first engine won iff WON. */
+    synchronized void record(boolean won) {
+        if (won) {
+            _wins += 1;
+        } else {
+            _losses += 1;
+        }
+    }
+
+    /** Return the number of games won by the first engine. */
+    synchronized int wins() {
+        return _wins;
+    }
+
+    /** Return the number of games lost by the first engine. */
+    synchronized int losses() {
+        return _losses;
+    }
+
+    /** Return the number of games recorded. */
+    synchronized int games() {
+        return _wins + _losses;
+    }
+
+    /** Return the first engine's fraction of wins, or 0.5 with no
+     *  games. */
+    synchronized double score() {
+        int n = games();
+        return n == 0 ? 0.5 : (double) _wins / n;
+    }
+
+    /** Return the estimated Elo difference of the first engine over the
+     *  second. */
+    synchronized double elo() {
+        return elo(score());
+    }
+
+    /** Return half the width of the 95% confidence interval of elo(). */
+    synchronized double eloMargin() {
+        int n = games();
+        if (n == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double p = score();
+        double sigma = Math.sqrt(p * (1 - p) / n);
+        return (elo(p + 1.96 * sigma) - elo(p - 1.96 * sigma)) / 2;
+    }
+
+    /** Return the log-likelihood ratio of the hypothesis that the Elo
+     *  difference is ELO1 over the hypothesis that it is ELO0. */
+    synchronized double llr(double elo0, double elo1) {
+        double p0 = expected(elo0), p1 = expected(elo1);
+        return _wins * Math.log(p1 / p0)
+            + _losses * Math.log((1 - p1) / (1 - p0));
+    }
+
+    /** Return the SPRT decision for testing Elo ELO0 (null hypothesis)
+     *  against ELO1 with error rates ALPHA and BETA: 1 if the null
+     *  hypothesis is rejected, -1 if it is accepted, and 0 if more games
+     *  are needed. */
+    synchronized int sprt(double elo0, double elo1,
+                          double alpha, double beta) {
+        double llr = llr(elo0, elo1);
+        if (llr >= Math.log((1 - beta) / alpha)) {
+            return 1;
+        } else if (llr <= Math.log(beta / (1 - alpha))) {
+            return -1;
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("games %d W %d L %d score %.1f%%"
+                             + " elo %+.1f +/- %.1f", games(), _wins,
+                             _losses, 100 * score(), elo(), eloMargin());
+    }
+
+    /** Return the expected score of a player rated ELO above its
+     *  opponent. */
+    static double expected(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /** Return the Elo difference corresponding to expected score P,
+     *  clamped away from 0 and 1. */
+    static double elo(double p) {
+        p = Math.max(1e-6, Math.min(1 - 1e-6, p));
+        return -400 * Math.log10(1 / p - 1);
+    }
+
+    /** Games won and lost by the first engine. */
+    private int _wins, _losses;
+}
@@ -3,7 +3,6 @@ package tablut;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import static tablut.Square.sq;
 import static tablut.Square.NUM_SQUARES;
@@ -38,37 +37,62 @@ final class Move {
     /** Return the unique Move FROM-TO, or null if this is not a valid
      *  move. */
     static Move mv(Square from, Square to) {
-        if ((from.row() != to.row() && from.col() != to.col()) || from == to) {
-            return null;
-        }
-
-        if (MOVES[from.index()][to.index()] == null) {
-            MOVES[from.index()][to.index()] = new Move(from, to);
-        }
         return MOVES[from.index()][to.index()];
     }
 
     /** Return the Move denoted by STR, if STR denotes a move with
-     *  valid syntax, and null otherwise. */
+     *  valid syntax, and null otherwise.  Parses STR directly, rather
+     *  than with MOVE_PATTERN, so that it is safe to call from any
+     *  thread. */
     static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            Square from = sq(_moveMatcher.group(1));
-            Square to;
-            if (_moveMatcher.group(5) == null) {
-                to = sq(_moveMatcher.group(4), _moveMatcher.group(3));
-            } else {
-                to = sq(_moveMatcher.group(2), _moveMatcher.group(5));
-            }
-            return mv(from, to);
+        if (str.length() != 4 || str.charAt(2) != '-') {
+            return null;
+        }
+        int col = str.charAt(0) - 'a', row = str.charAt(1) - '1';
+        char dest = str.charAt(3);
+        if (!isCol(str.charAt(0)) || !isRow(str.charAt(1))) {
+            return null;
+        } else if (isCol(dest)) {
+            return mv(sq(col, row), sq(dest - 'a', row));
+        } else if (isRow(dest)) {
+            return mv(sq(col, row), sq(col, dest - '1'));
         }
         return null;
     }
 
+    /** Return true iff C is a column designation (a-i). */
+    private static boolean isCol(char c) {
+        return c >= 'a' && c < 'a' + Square.BOARD_SIZE;
+    }
+
+    /** Return true iff C is a row designation (1-9). */
+    private static boolean isRow(char c) {
+        return c >= '1' && c < '1' + Square.BOARD_SIZE;
+    }
+
+    /** Return the Move whose code() is CODE, or null if CODE does not
+     *  denote a valid move. */
+    static Move mv(int code) {
+        if (code < 0 || code >= NUM_SQUARES * NUM_SQUARES) {
+            return null;
+        }
+        return mv(sq(code / NUM_SQUARES), sq(code % NUM_SQUARES));
+    }
+
+    /** Return a compact code for me in the range 0 .. NUM_SQUARES**2 - 1,
+     *  suitable for storing moves in tables. */
+    int code() {
+        return _from.index() * NUM_SQUARES + _to.index();
+    }
+
     /** Return true iff STR has the right format for a Move. */
     static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+        if (str.length() != 4 || str.charAt(2) != '-') {
+            return false;
+        }
+        char dest = str.charAt(3);
+        return isCol(str.charAt(0)) && isRow(str.charAt(1))
+            && (isCol(dest) || isRow(dest));
     }
 
     @Override
@@ -109,7 +133,10 @@ final class Move {
         return (_from.index() << 6) + _to.index();
     }
 
-    /** The cache of all Moves created. */
+    /** MOVES[i][j] is the unique Move from the square with index i to the
+     *  one with index j, or null if there is no such rook move.  Filled
+     *  in once, when the class is initialized, and never modified after
+     *  that, so that it may be read by any thread. */
     private static final Move[][] MOVES = new Move[NUM_SQUARES][NUM_SQUARES];
 
     /** ROOK_MOVES[i][d] is a list of all rook moves in direction
@@ -119,6 +146,13 @@ final class Move {
     static final MoveList[][] ROOK_MOVES = new MoveList[NUM_SQUARES][4];
 
     static {
+        for (Square from : SQUARE_LIST) {
+            for (Square to : SQUARE_LIST) {
+                if (from.isRookMove(to)) {
+                    MOVES[from.index()][to.index()] = new Move(from, to);
+                }
+            }
+        }
         for (Square sq0 : SQUARE_LIST) {
             int r0 = sq0.row(), c0 = sq0.col(), i0 = sq0.index();
             for (int d = 0; d < 4; d += 1) {
@@ -133,7 +167,5 @@ final class Move {
     /** The components of this Move. */
     private final Square _from, _to;
     /** The printed form of this Move. */
-    private String _str;
-    /**  A utility Matcher for moves, using MOVE_PATTERN. */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
+    private final String _str;
 }
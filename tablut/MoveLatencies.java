@@ -0,0 +1,120 @@
+package tablut;
+
+import java.util.Formatter;
+
+import static tablut.Piece.*;
+
+/** Distributions of the search latency, nodes searched, and depth
+ *  reached by automated moves, each broken out by game phase (as
+ *  determined by the number of pieces on the board).  Memory use is
+ *  fixed, no matter how many moves are recorded.
+ *  @author Andrew Kaplan
+ */
+class MoveLatencies {
+
+    /** Names of the game phases. */
+    static final String[] PHASES = { "opening", "middlegame", "endgame" };
+
+    /** A position with at least OPENING_PIECES pieces is in the opening;
+     *  one with at least MIDDLEGAME_PIECES is in the middlegame; others are
+     *  in the endgame.  There are 25 pieces initially. */
+    static final int OPENING_PIECES = 21, MIDDLEGAME_PIECES = 13;
+
+    /** Percentiles reported. */
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    /** Empty distributions. */
+    MoveLatencies() {
+        for (int p = 0; p < PHASES.length; p += 1) {
+            _micros[p] = new Histogram();
+            _nodes[p] = new Histogram();
+            _depths[p] = new Histogram();
+        }
+    }
+
+    /** Return the index in PHASES of the phase of BOARD. */
+    static int phase(Board board) {
+        int pieces = board.pieceLocations(WHITE).size()
+            + board.pieceLocations(BLACK).size();
+        if (pieces >= OPENING_PIECES) {
+            return 0;
+        } else if (pieces >= MIDDLEGAME_PIECES) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    /** Record a search for a move from BOARD that took NANOS nanoseconds
+     *  and is described by STATS. */
+    synchronized void record(Board board, long nanos, SearchStats stats) {
+        int p = phase(board);
+        _micros[p].record(nanos / 1000);
+        _nodes[p].record(stats.nodes());
+        _depths[p].record(stats.depth());
+    }
+
+    /** Return the number of moves recorded. */
+    synchronized long count() {
+        long n = 0;
+        for (Histogram h : _micros) {
+            n += h.count();
+        }
+        return n;
+    }
+
+    /** Forget all recorded moves. */
+    synchronized void clear() {
+        for (int p = 0; p < PHASES.length; p += 1) {
+            _micros[p].clear();
+            _nodes[p].clear();
+            _depths[p].clear();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        Formatter out = new Formatter();
+        Histogram micros = new Histogram(), nodes = new Histogram(),
+            depths = new Histogram();
+        for (int p = 0; p < PHASES.length; p += 1) {
+            if (_micros[p].count() > 0) {
+                report(out, PHASES[p], _micros[p], _nodes[p], _depths[p]);
+                micros.add(_micros[p]);
+                nodes.add(_nodes[p]);
+                depths.add(_depths[p]);
+            }
+        }
+        report(out, "all", micros, nodes, depths);
+        return out.toString();
+    }
+
+    /** Write the distributions MICROS, NODES, and DEPTHS for the moves in
+     *  PHASE to OUT. */
+    private static void report(Formatter out, String phase, Histogram micros,
+                               Histogram nodes, Histogram depths) {
+        out.format("%s: %d moves%n", phase, micros.count());
+        out.format("  time (ms)");
+        for (double pct : PERCENTILES) {
+            out.format(" p%.0f %.1f", pct, micros.percentile(pct) / 1000.0);
+        }
+        out.format(" max %.1f%n", micros.max() / 1000.0);
+        out.format("  nodes    ");
+        for (double pct : PERCENTILES) {
+            out.format(" p%.0f %d", pct, nodes.percentile(pct));
+        }
+        out.format(" max %d%n", nodes.max());
+        out.format("  depth    ");
+        for (double pct : PERCENTILES) {
+            out.format(" p%.0f %d", pct, depths.percentile(pct));
+        }
+        out.format(" max %d%n", depths.max());
+    }
+
+    /** Search times in microseconds, by phase. */
+    private final Histogram[] _micros = new Histogram[PHASES.length];
+    /** Nodes searched, by phase. */
+    private final Histogram[] _nodes = new Histogram[PHASES.length];
+    /** Depths reached, by phase. */
+    private final Histogram[] _depths = new Histogram[PHASES.length];
+}
@@ -39,6 +39,29 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Make use of the time while my opponent is to move, if I can.  Called
+     *  each time the opponent is about to be asked for a command, so it
+     *  must be cheap when repeated.  By default, does nothing. */
+    void ponder() {
+    }
+
+    /** Abandon any work started by ponder().  By default, does nothing. */
+    void stopPondering() {
+    }
+
+    /** Abandon any work started by ponder() and release anything I hold,
+     *  since I will not be used again.  By default, just stops
+     *  pondering. */
+    void close() {
+        stopPondering();
+    }
+
+    /** Return counters describing my most recent search for a move, or
+     *  null if I do not search. */
+    SearchStats statistics() {
+        return null;
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
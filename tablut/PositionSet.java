@@ -0,0 +1,93 @@
+package tablut;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded set of position hashes (Board.hash() values) held outside
+ *  the Java heap, so that sets of hundreds of millions of positions cost
+ *  the garbage collector nothing.  The set is an open-addressed table in
+ *  a direct buffer that any number of threads may update at once without
+ *  locking, each slot being claimed by a compare-and-set.  The set never
+ *  grows: once the PROBE_LIMIT slots where a hash may live are all taken,
+ *  adding it overwrites the first of them, its home slot, whatever that
+ *  holds, so that a position seen before may occasionally be accepted
+ *  again.
+ *  @author Andrew Kaplan
+ */
+class PositionSet {
+
+    /** Number of slots examined for each hash. */
+    static final int PROBE_LIMIT = 16;
+
+    /** Bytes used by one slot. */
+    static final int SLOT_BYTES = Long.BYTES;
+
+    /** Atomic access to the slots of a buffer. */
+    private static final VarHandle SLOTS =
+        MethodHandles.byteBufferViewVarHandle(long[].class,
+                                              ByteOrder.nativeOrder());
+
+    /** A new, empty set occupying about MEGABYTES megabytes (at most 1
+     *  gigabyte, and at least PROBE_LIMIT slots). */
+    PositionSet(int megabytes) {
+        long slots = Math.max(PROBE_LIMIT, (long) megabytes * (1 << 20)
+                              / SLOT_BYTES);
+        slots = Math.min(Long.highestOneBit(slots), 1L << 27);
+        _slots = ByteBuffer.allocateDirect((int) slots * SLOT_BYTES
+                                           + SLOT_BYTES)
+            .alignedSlice(SLOT_BYTES).order(ByteOrder.nativeOrder());
+        _mask = (int) slots - 1;
+        _shift = Long.numberOfLeadingZeros(slots) + 1;
+    }
+
+    /** Add HASH to me.  Return true iff it was not already present. */
+    boolean add(long hash) {
+        long key = hash == 0 ? 1 : hash;
+        int home = (int) ((key * 0x9E3779B97F4A7C15L) >>> _shift);
+        for (int i = 0; i < PROBE_LIMIT; i += 1) {
+            int index = ((home + i) & _mask) * SLOT_BYTES;
+            long slot = (long) SLOTS.getVolatile(_slots, index);
+            if (slot == 0) {
+                if (SLOTS.compareAndSet(_slots, index, 0L, key)) {
+                    _size.increment();
+                    return true;
+                }
+                slot = (long) SLOTS.getVolatile(_slots, index);
+            }
+            if (slot == key) {
+                return false;
+            }
+        }
+        SLOTS.setVolatile(_slots, (home & _mask) * SLOT_BYTES, key);
+        _evictions.increment();
+        return true;
+    }
+
+    /** Return the number of slots in use. */
+    long size() {
+        return _size.sum();
+    }
+
+    /** Return the number of slots. */
+    int capacity() {
+        return _mask + 1;
+    }
+
+    /** Return the number of hashes that have displaced others. */
+    long evictions() {
+        return _evictions.sum();
+    }
+
+    /** The slots: each 0 (empty) or a key. */
+    private final ByteBuffer _slots;
+    /** Number of slots less one. */
+    private final int _mask;
+    /** Shift giving a slot index from a mixed hash. */
+    private final int _shift;
+    /** Counts of slots in use and of evictions. */
+    private final LongAdder _size = new LongAdder(),
+        _evictions = new LongAdder();
+}
@@ -0,0 +1,753 @@
+package tablut;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ucb.util.CommandArgs;
+
+/** An in-process runner for the integration tests in the testing
+ *  directory.  It interprets the same scripts as testing/test-tablut, but
+ *  rather than starting a JVM for each program, it runs each one as a
+ *  Controller on a pair of threads in this JVM, with its input fed through
+ *  a pipe and its output filtered as it is written.  Tests run in
+ *  parallel, each test F-1.in together with F-2.in, if that exists, and
+ *  the filtered outputs are compared with F-1.std (and F-2.std) as
+ *  testing/tester.py does.  Only scripts whose initial "#*" line runs
+ *  tablut.Main, with no options other than --strict and --testing, can be
+ *  run this way.
+ *  @author Andrew Kaplan
+ */
+public class ScriptTester {
+
+    /** Default time limits, in seconds, for one move and for one game. */
+    static final double MOVE_TIME_LIMIT = 10, GAME_TIME_LIMIT = 60;
+
+    /** Time, in seconds, allowed for a program to announce a win or to
+     *  exit once its input ends. */
+    static final double SHORT_WAIT = 5;
+
+    /** Interval, in milliseconds, at which waiting sessions check whether
+     *  they have been stopped. */
+    static final long QUANTUM = 50;
+
+    /** Maximum number of lines of output and of error output allowed from
+     *  one program. */
+    static final int MAX_OUTPUT_LINES = 3000, MAX_ERROR_LINES = 3000;
+
+    /** Maximum number of unread messages from one program. */
+    static final int QUEUE_CAPACITY = 100;
+
+    /** Size of the pipe carrying a program's input. */
+    static final int PIPE_SIZE = 1 << 16;
+
+    /** Queued to mark the end of a program's messages.  Compared by
+     *  identity. */
+    private static final String EOS = new String("");
+
+    /** Matches an announced win. */
+    private static final Pattern WIN_PATN =
+        Pattern.compile("\\s*\\*\\s*((?:Black|White)\\s+wins\\.)\\s*$");
+
+    /** Matches an announced move. */
+    private static final Pattern MOVE_PATN =
+        Pattern.compile("\\s*\\*\\s*(?<move>[a-i][1-9]-[a-i1-9])");
+
+    /** Matches an announced move or win. */
+    private static final Pattern MSG_PATN =
+        Pattern.compile(String.format("(?<win>%s)|%s", WIN_PATN.pattern(),
+                                      MOVE_PATN.pattern()));
+
+    /** Matches a testing directive, giving its text in group 1. */
+    private static final Pattern DIRECTIVE_PATN =
+        Pattern.compile("\\s*#\\*\\s*(.*?)\\s*$");
+
+    /** Matches the text of the directives that drive play. */
+    private static final Pattern PLAY_PATN =
+        Pattern.compile("(move/win(\\+?))|(remote\\s+move/win(\\+?))|(move)"
+                        + "|(win\\+)|time\\s+([\\d.]+)\\s+([\\d/]+)");
+
+    /** The main program.  See the usage message for ARGS. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--threads={0,1} --verbose --={0,}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> tests = new ArrayList<>();
+        try {
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            List<String> names = options.get("--");
+            for (String name : names.isEmpty() ? List.of(".") : names) {
+                tests.addAll(scripts(Path.of(name)));
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            usage();
+        }
+        int passed = new ScriptTester(threads, options.contains("--verbose"))
+            .run(tests);
+        System.exit(passed == tests.size() ? 0 : 1);
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java tablut.ScriptTester [--threads=N]"
+                           + " [--verbose] [TEST-1.in | DIRECTORY]...");
+        System.exit(1);
+    }
+
+    /** Return the first-program scripts named by NAME: NAME itself if it
+     *  is a file, or else the files named *-1.in in the directory NAME,
+     *  in order of name. */
+    static List<Path> scripts(Path name) throws IOException {
+        if (!Files.isDirectory(name)) {
+            return List.of(name);
+        }
+        List<Path> result = new ArrayList<>();
+        try (var files = Files.newDirectoryStream(name, "*-1.in")) {
+            files.forEach(result::add);
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** A runner of tests on THREADS threads at once, which prints the
+     *  outputs of failing tests iff VERBOSE. */
+    ScriptTester(int threads, boolean verbose) {
+        _threads = Math.max(1, threads);
+        _verbose = verbose;
+    }
+
+    /** Run the tests whose first scripts are TESTS, reporting each on the
+     *  standard output in order, followed by a summary.  Return the
+     *  number that passed. */
+    int run(List<Path> tests) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<Result>> results = new ArrayList<>();
+        for (Path test : tests) {
+            results.add(pool.submit(() -> runTest(test)));
+        }
+        int passed = 0;
+        long totalMillis = 0;
+        try {
+            for (Future<Result> future : results) {
+                Result result = future.get();
+                totalMillis += result._millis;
+                if (result._reason == null) {
+                    passed += 1;
+                    System.out.printf("** %s PASSED (%d ms).%n",
+                                      result._id, result._millis);
+                } else {
+                    System.out.printf("** %s FAILED (%s) (%d ms).%n",
+                                      result._id, result._reason,
+                                      result._millis);
+                    if (_verbose) {
+                        for (int i = 0; i < result._outputs.length; i += 1) {
+                            System.out.printf("+--- output %d ---+%n%s",
+                                              i + 1, result._outputs[i]);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        if (passed == tests.size()) {
+            System.out.printf("Passed all %d tests", tests.size());
+        } else {
+            System.out.printf("Passed %d out of %d tests", passed,
+                              tests.size());
+        }
+        System.out.printf(" in %.2f s (%.2f s of test time).%n", secs,
+                          totalMillis / 1000.0);
+        System.out.flush();
+        return passed;
+    }
+
+    /** The outcome of one test. */
+    static class Result {
+        /** The outcome of the test named ID, which took MILLIS
+         *  milliseconds and failed for REASON (null if it passed), with
+         *  filtered OUTPUTS. */
+        Result(String id, long millis, String reason, String... outputs) {
+            _id = id;
+            _millis = millis;
+            _reason = reason;
+            _outputs = outputs;
+        }
+
+        /** Name of the test. */
+        private final String _id;
+        /** Elapsed time of the test in milliseconds. */
+        private final long _millis;
+        /** Reason for failure, or null. */
+        private final String _reason;
+        /** Filtered outputs of the programs. */
+        private final String[] _outputs;
+    }
+
+    /** Run the test whose first script is SCRIPT1 and return its
+     *  result. */
+    Result runTest(Path script1) {
+        long start = System.nanoTime();
+        String name = script1.getFileName().toString();
+        String id = name.replaceFirst("\\.in$", "");
+        Path script2 = script1.resolveSibling(name.replaceFirst("-1\\.in$",
+                                                                "-2.in"));
+        List<Path> scripts = new ArrayList<>(List.of(script1));
+        if (!script2.equals(script1) && Files.exists(script2)) {
+            scripts.add(script2);
+        }
+        Session[] sessions = new Session[scripts.size()];
+        String reason = null;
+        try {
+            for (int i = 0; i < sessions.length; i += 1) {
+                sessions[i] = new Session(String.format("[%d]", i + 1),
+                                          Files.readAllLines(scripts.get(i)));
+            }
+            if (sessions.length > 1) {
+                sessions[0].setOther(sessions[1]);
+                sessions[1].setOther(sessions[0]);
+            }
+            for (Session session : sessions) {
+                session.start();
+            }
+            for (Session session : sessions) {
+                session.join();
+            }
+            for (int i = 0; reason == null && i < sessions.length; i += 1) {
+                if (sessions[i].endMessage() != null) {
+                    reason = String.format("Program %d ended with: %s", i + 1,
+                                           sessions[i].endMessage());
+                }
+            }
+            for (int i = 0; reason == null && i < sessions.length; i += 1) {
+                String std = filter(Files.readString(
+                    scripts.get(i).resolveSibling(
+                        id.replaceFirst("-1$", "-" + (i + 1)) + ".std")));
+                String diff = difference(std, filter(sessions[i].output()));
+                if (diff != null) {
+                    reason = String.format("output %d differs at %s",
+                                           i + 1, diff);
+                }
+            }
+        } catch (IOException excp) {
+            reason = excp.toString();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            reason = "interrupted";
+        }
+        String[] outputs = new String[sessions.length];
+        for (int i = 0; i < sessions.length; i += 1) {
+            outputs[i] = sessions[i] == null ? "" : sessions[i].output();
+        }
+        return new Result(id, (System.nanoTime() - start) / 1_000_000,
+                          reason, outputs);
+    }
+
+    /** Return TEXT with comments, trailing blanks, and empty lines
+     *  removed, as for comparison by testing/tester.py. */
+    static String filter(String text) {
+        text = text.replaceAll("(?m)(?:#.*|[ \\t]+$)", "");
+        return text.replaceAll("(?m)(?:^\\r?\\n)", "");
+    }
+
+    /** Return a description of the first line at which ACTUAL differs
+     *  from EXPECTED, or null if they are the same. */
+    static String difference(String expected, String actual) {
+        if (expected.equals(actual)) {
+            return null;
+        }
+        String[] std = expected.split("\\r?\\n", -1),
+            out = actual.split("\\r?\\n", -1);
+        int line;
+        for (line = 0; line < std.length - 1 && line < out.length - 1
+                 && std[line].equals(out[line]); line += 1) {
+            continue;
+        }
+        return String.format("line %d: expected \"%s\", got \"%s\"",
+                             line + 1, line < std.length - 1 ? std[line]
+                             : "<end>",
+                             line < out.length - 1 ? out[line] : "<end>");
+    }
+
+    /** Thrown to stop interpreting a script. */
+    private static class Terminated extends RuntimeException {
+        /** Version of my serialized form. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** One program, run as a Controller driven by a script: the
+     *  counterpart of Prog in testing/test-tablut. */
+    static class Session {
+
+        /** A session named ID that interprets the lines of SCRIPT. */
+        Session(String id, List<String> script) throws IOException {
+            _id = id;
+            _script = script.iterator();
+            String command = null;
+            while (command == null && _script.hasNext()) {
+                Matcher mat = DIRECTIVE_PATN.matcher(_script.next());
+                if (mat.matches()) {
+                    command = mat.group(1);
+                }
+            }
+            if (command == null) {
+                _endMessage = "could not find initial command line";
+                return;
+            }
+            List<String> words = Arrays.asList(command.split("\\s+"));
+            int main = words.indexOf("tablut.Main");
+            if (main < 0 || !words.get(0).equals("java")) {
+                _endMessage = "cannot run in process: " + command;
+                return;
+            }
+            for (String option : words.subList(main + 1, words.size())) {
+                if (option.equals("--strict")) {
+                    _strict = true;
+                } else if (!option.equals("--testing")) {
+                    _endMessage = "cannot run in process: " + command;
+                    return;
+                }
+            }
+            PipedInputStream input = new PipedInputStream(PIPE_SIZE);
+            _commands = new PipedOutputStream(input);
+            PrintStream out =
+                new PrintStream(new LineStream(this::outputLine), false);
+            PrintStream err =
+                new PrintStream(new LineStream(this::errorLine), true);
+            _controller =
+                new Controller(new NullView(), null,
+                               new TextReporter(out, err), new TextPlayer(),
+                               new AI(), false, input, out);
+        }
+
+        /** Make OTHER my opponent, to which my moves are passed. */
+        void setOther(Session other) {
+            _other = other;
+        }
+
+        /** Start running my program and interpreting my script. */
+        void start() {
+            if (_controller == null) {
+                return;
+            }
+            _program = new Thread(this::runProgram, "tablut-test" + _id);
+            _program.setDaemon(true);
+            _program.start();
+            _driver = new Thread(this::runScript, "tablut-script" + _id);
+            _driver.setDaemon(true);
+            _driver.start();
+        }
+
+        /** Wait for my script to finish. */
+        void join() throws InterruptedException {
+            if (_driver != null) {
+                _driver.join();
+            }
+        }
+
+        /** Return the reason my program ended abnormally, or null if it
+         *  did not. */
+        String endMessage() {
+            return _endMessage;
+        }
+
+        /** Return my filtered output. */
+        synchronized String output() {
+            return _output.toString();
+        }
+
+        /** Body of the thread running my program. */
+        private void runProgram() {
+            PrintStream out = _controller.output();
+            try {
+                out.println(Main.VERSION);
+                _controller.play();
+            } catch (RuntimeException | Error excp) {
+                setEndMessage("terminated with " + excp);
+            } finally {
+                out.flush();
+                enqueue(_messages, EOS);
+            }
+        }
+
+        /** Body of the thread interpreting my script. */
+        private void runScript() {
+            try {
+                while (_script.hasNext()) {
+                    String line = _script.next();
+                    Matcher dir = DIRECTIVE_PATN.matcher(line);
+                    if (!dir.matches()) {
+                        sendCommand(line);
+                        continue;
+                    }
+                    Matcher mat = PLAY_PATN.matcher(dir.group(1));
+                    if (!mat.matches()) {
+                        errorExit("Invalid command in testing file: "
+                                  + line.trim());
+                    } else if (mat.group(1) != null) {
+                        localGame(!mat.group(2).isEmpty());
+                    } else if (mat.group(3) != null) {
+                        remoteGame();
+                    } else if (mat.group(5) != null) {
+                        _timeRemaining = _gameTimeLimit;
+                        ourMove(false);
+                    } else if (mat.group(6) != null) {
+                        win();
+                    } else {
+                        _moveTimeLimit = Double.parseDouble(mat.group(7));
+                        _gameTimeLimit = Double.parseDouble(mat.group(8));
+                    }
+                }
+            } catch (Terminated excp) {
+                /* Stop interpreting. */
+            }
+            stop(null);
+        }
+
+        /** Send LINE to my program as a command. */
+        private void sendCommand(String line) {
+            try {
+                _commands.write((line + "\n")
+                                .getBytes(StandardCharsets.US_ASCII));
+                _commands.flush();
+            } catch (IOException excp) {
+                /* The program has stopped reading. */
+            }
+        }
+
+        /** Process LINE, a line of my program's standard output. */
+        private synchronized void outputLine(String line) {
+            _outputLines += 1;
+            if (_outputLines > MAX_OUTPUT_LINES) {
+                if (_outputLines == MAX_OUTPUT_LINES + 1) {
+                    setEndMessage("too much output");
+                    enqueue(_messages, EOS);
+                }
+                return;
+            }
+            line = line.replaceFirst("^.*> *", "");
+            if (_dumping) {
+                _output.append(line).append('\n');
+                _dumping = !line.startsWith("===");
+            } else if (line.matches("\\s*\\*.*")) {
+                if (_endMessage == null) {
+                    enqueue(_messages, line);
+                }
+            } else if (line.startsWith("===")) {
+                _output.append(line).append('\n');
+                _dumping = true;
+            }
+        }
+
+        /** Process LINE, a line of my program's error output. */
+        private void errorLine(String line) {
+            _errorLines += 1;
+            if (_strict) {
+                setEndMessage("process did not exit normally.");
+            } else if (_errorLines > MAX_ERROR_LINES) {
+                setEndMessage("too much error output");
+            }
+        }
+
+        /** Add LINE to my filtered output. */
+        private synchronized void record(String line) {
+            _output.append(line.stripTrailing()).append('\n');
+        }
+
+        /** Return the next move or win message from my program, passing
+         *  it on to my opponent, if any.  A win is an error unless
+         *  WINALLOWED. */
+        private String ourMove(boolean winAllowed) {
+            String msg = timedGet(_messages, "waiting for my move");
+            msg = msg.replaceAll(" +", " ");
+            Matcher mat = MSG_PATN.matcher(msg);
+            if (!mat.lookingAt()) {
+                errorExit("malformed move or win message: " + msg);
+            }
+            if (_other != null) {
+                _other.receiveMove(msg);
+            }
+            if (mat.group("win") != null && !winAllowed) {
+                errorExit("unexpected win message");
+            }
+            return msg;
+        }
+
+        /** Return the next move or win message from my opponent. */
+        private String remoteMove() {
+            String msg = timedGet(_moves, "waiting for opponent");
+            msg = msg.replaceAll(" +", " ");
+            if (!MSG_PATN.matcher(msg).lookingAt()) {
+                errorExit("malformed move or win message: " + msg);
+            }
+            return msg;
+        }
+
+        /** Let my program play itself until it announces a win, recording
+         *  the win iff PRINTWIN. */
+        private void localGame(boolean printWin) {
+            _timeRemaining = _gameTimeLimit;
+            while (true) {
+                String msg = ourMove(true);
+                if (WIN_PATN.matcher(msg).lookingAt()) {
+                    if (printWin) {
+                        record(msg);
+                    }
+                    _timeRemaining = _moveTimeLimit;
+                    return;
+                }
+            }
+        }
+
+        /** Play a game between my program and my opponent's, relaying
+         *  the opponent's moves as commands, until both announce the
+         *  same win. */
+        private void remoteGame() {
+            if (_other == null) {
+                errorExit("invalid remote command in testing file"
+                          + " (no opponent)");
+            }
+            _timeRemaining = _gameTimeLimit;
+            String prevWin = null;
+            while (true) {
+                Matcher rmat = MSG_PATN.matcher(remoteMove());
+                rmat.lookingAt();
+                String currWin = rmat.group("win");
+                if (currWin != null) {
+                    if (prevWin != null) {
+                        if (!prevWin.equals(currWin)) {
+                            errorExit("received conflicting win");
+                        }
+                        return;
+                    }
+                    prevWin = currWin;
+                } else if (prevWin != null) {
+                    errorExit("received move; expected win");
+                } else {
+                    sendCommand(rmat.group("move"));
+                }
+                Matcher mat = MSG_PATN.matcher(ourMove(true));
+                mat.lookingAt();
+                currWin = mat.group("win");
+                if (currWin != null) {
+                    if (prevWin != null) {
+                        if (!prevWin.equals(currWin)) {
+                            errorExit("received conflicting win");
+                        }
+                        return;
+                    }
+                    prevWin = currWin;
+                } else if (prevWin != null) {
+                    errorExit("made local move; expected win");
+                }
+            }
+        }
+
+        /** Expect a win announcement from my program, and record it. */
+        private void win() {
+            _timeRemaining = SHORT_WAIT;
+            String msg = ourMove(true);
+            if (!WIN_PATN.matcher(msg).lookingAt()) {
+                errorExit("expected win; received move");
+            }
+            record(msg);
+        }
+
+        /** Stop interpreting my script and my opponent's, giving REASON
+         *  as the end message if there is none already. */
+        private void errorExit(String reason) {
+            setEndMessage(reason);
+            if (_other != null) {
+                _other.receiveMove(EOS);
+                _other.stop(null);
+            }
+            throw new Terminated();
+        }
+
+        /** Queue MSG, a message from my opponent. */
+        void receiveMove(String msg) {
+            enqueue(_moves, msg);
+        }
+
+        /** End my program's input and wait for it to finish, giving
+         *  REASON as the end message if there is none already. */
+        void stop(String reason) {
+            setEndMessage(reason);
+            if (_controller == null) {
+                return;
+            }
+            try {
+                _commands.close();
+            } catch (IOException excp) {
+                /* Ignore IOException. */
+            }
+            enqueue(_messages, EOS);
+            try {
+                _program.join((long) (SHORT_WAIT * 1000));
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            if (_program.isAlive()) {
+                _program.interrupt();
+                setEndMessage("process did not exit normally.");
+            }
+        }
+
+        /** Set my end message to REASON, unless it is null or there is
+         *  one already. */
+        private synchronized void setEndMessage(String reason) {
+            if (_endMessage == null) {
+                _endMessage = reason;
+            }
+        }
+
+        /** Add MSG to QUEUE, ending my program as unresponsive if it is
+         *  full.  Return false iff the queue is full. */
+        private boolean enqueue(BlockingQueue<String> queue, String msg) {
+            if (queue.offer(msg)) {
+                return true;
+            }
+            setEndMessage(String.format("program %s seems to be"
+                                        + " unresponsive.", _id));
+            return false;
+        }
+
+        /** Return the next item from QUEUE, waiting as long as the
+         *  current time limits allow.  Terminates the script if time runs
+         *  out, the session is ended, or the end of messages is reached.
+         *  WHERE describes what is being waited for. */
+        private String timedGet(BlockingQueue<String> queue, String where) {
+            long tries = (long) (Math.min(_moveTimeLimit, _timeRemaining)
+                                 * 1000 / QUANTUM);
+            for (long c = 0; c < tries; c += 1) {
+                String msg;
+                try {
+                    msg = queue.poll(QUANTUM, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException excp) {
+                    throw new Terminated();
+                }
+                if (msg == EOS) {
+                    throw new Terminated();
+                } else if (msg != null) {
+                    return msg;
+                }
+                _timeRemaining -= QUANTUM / 1000.0;
+                if (_endMessage != null) {
+                    throw new Terminated();
+                }
+            }
+            setEndMessage("time limit exceeded " + where);
+            throw new Terminated();
+        }
+
+        /** Name of this session. */
+        private final String _id;
+        /** Remaining lines of the script. */
+        private final Iterator<String> _script;
+        /** The program, or null if it could not be created. */
+        private Controller _controller;
+        /** Carries commands to the program. */
+        private PipedOutputStream _commands;
+        /** Threads running the program and the script. */
+        private Thread _program, _driver;
+        /** The opponent's session, if any. */
+        private Session _other;
+        /** True iff the program was to exit on its first error. */
+        private boolean _strict;
+        /** Reason the program ended abnormally, or null. */
+        private volatile String _endMessage;
+        /** Filtered output: board dumps and recorded wins. */
+        private final StringBuilder _output = new StringBuilder();
+        /** True while copying a board dump to _output. */
+        private boolean _dumping;
+        /** Lines written to the standard output and error. */
+        private int _outputLines, _errorLines;
+        /** Move and win messages from the program. */
+        private final BlockingQueue<String> _messages =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        /** Move and win messages from the opponent. */
+        private final BlockingQueue<String> _moves =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        /** Time limits for one move and for one game, in seconds. */
+        private double _moveTimeLimit = MOVE_TIME_LIMIT,
+            _gameTimeLimit = GAME_TIME_LIMIT;
+        /** Time left for the current game, in seconds. */
+        private double _timeRemaining = GAME_TIME_LIMIT;
+    }
+
+    /** An output stream that passes each line written to it, without its
+     *  terminator, to a consumer. */
+    private static class LineStream extends OutputStream {
+        /** A stream passing lines to CONSUMER. */
+        LineStream(Consumer<String> consumer) {
+            _consumer = consumer;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                int len = _length;
+                if (len > 0 && _buffer[len - 1] == '\r') {
+                    len -= 1;
+                }
+                _consumer.accept(new String(_buffer, 0, len,
+                                            StandardCharsets.ISO_8859_1));
+                _length = 0;
+            } else {
+                if (_length == _buffer.length) {
+                    _buffer = Arrays.copyOf(_buffer, 2 * _length);
+                }
+                _buffer[_length] = (byte) b;
+                _length += 1;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i += 1) {
+                write(b[i]);
+            }
+        }
+
+        /** Receives completed lines. */
+        private final Consumer<String> _consumer;
+        /** The current partial line. */
+        private byte[] _buffer = new byte[128];
+        /** Number of bytes in _buffer. */
+        private int _length;
+    }
+
+    /** Number of tests run at once. */
+    private final int _threads;
+    /** True iff outputs of failing tests are printed. */
+    private final boolean _verbose;
+}
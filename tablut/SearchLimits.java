@@ -0,0 +1,189 @@
+package tablut;
+
+/** Bounds on a single search by an AI: a maximum depth, a time budget,
+ *  a node budget, and the time left for the rest of the game, any of
+ *  which may be absent, and whether the search must be reproducible.  An
+ *  infinite or pondering search ignores its time budget until it is
+ *  stopped or converted to a normal search by ponderHit.
+ *  @author Andrew Kaplan
+ */
+class SearchLimits {
+
+    /** The largest depth any search will reach. */
+    static final int MAX_DEPTH = 64;
+
+    /** Number of moves of its side assumed to remain in a game whose move
+     *  limit is further off, when dividing the time left among them. */
+    static final int MOVES_TO_GO = 30;
+    /** Most times its share of the time left that one move may take. */
+    static final int MAX_STRETCH = 4;
+
+    /** Limits allowing a search of up to MAX_DEPTH plies with no
+     *  time or node budget, for a single best line. */
+    SearchLimits() {
+        _depth = MAX_DEPTH;
+        _multiPV = 1;
+    }
+
+    /** Return the maximum search depth. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Set the maximum search depth to DEPTH and return this. */
+    SearchLimits setDepth(int depth) {
+        _depth = Math.max(1, Math.min(depth, MAX_DEPTH));
+        return this;
+    }
+
+    /** Return the time budget in milliseconds, or 0 if there is none. */
+    long moveTime() {
+        return _moveTime;
+    }
+
+    /** Set the time budget to MILLIS milliseconds (0 for none) and return
+     *  this. */
+    SearchLimits setMoveTime(long millis) {
+        _moveTime = Math.max(0, millis);
+        return this;
+    }
+
+    /** Return the time in milliseconds left on the searching side's
+     *  clock for the rest of the game, or 0 if the game is untimed.  The
+     *  searcher chooses how much of it to spend on this move. */
+    long timeLeft() {
+        return _timeLeft;
+    }
+
+    /** Set the time left to MILLIS milliseconds (0 for an untimed game)
+     *  and return this. */
+    SearchLimits setTimeLeft(long millis) {
+        _timeLeft = Math.max(0, millis);
+        return this;
+    }
+
+    /** Return the time in milliseconds that a search of BOARD under
+     *  these limits should aim to take, or 0 if it has no time limit:
+     *  the time budget, but in a timed game at most the side to move's
+     *  share of the time left, which is divided evenly among the moves
+     *  it may still make before the move limit (or MOVES_TO_GO, if
+     *  fewer), and never more than maximumMillis(BOARD). */
+    long targetMillis(Board board) {
+        if (_timeLeft == 0) {
+            return _moveTime;
+        }
+        return Math.min(maximumMillis(board),
+                        Math.max(1, _timeLeft / movesToGo(board)));
+    }
+
+    /** Return the most time in milliseconds that a search of BOARD under
+     *  these limits may take, or 0 if it has no time limit: the time
+     *  budget, but in a timed game at most MAX_STRETCH times the side to
+     *  move's share of the time left (see targetMillis), always leaving
+     *  some time for the rest of the game. */
+    long maximumMillis(Board board) {
+        if (_timeLeft == 0) {
+            return _moveTime;
+        }
+        long maximum =
+            Math.max(1, Math.min(_timeLeft * 3 / 4,
+                                 _timeLeft / movesToGo(board)
+                                 * MAX_STRETCH));
+        return _moveTime == 0 ? maximum : Math.min(_moveTime, maximum);
+    }
+
+    /** Return the number of moves among which the side to move in BOARD
+     *  divides its time left. */
+    private static long movesToGo(Board board) {
+        long movesLeft =
+            (2L * board.moveLimit() - board.moveCount() + 1) / 2;
+        return Math.max(1, Math.min(MOVES_TO_GO, movesLeft));
+    }
+
+    /** Return the node budget, or 0 if there is none. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Set the node budget to NODES (0 for none) and return this. */
+    SearchLimits setNodes(long nodes) {
+        _nodes = Math.max(0, nodes);
+        return this;
+    }
+
+    /** Return true iff the search should continue until stopped. */
+    boolean infinite() {
+        return _infinite;
+    }
+
+    /** Set infinite() to INFINITE and return this. */
+    SearchLimits setInfinite(boolean infinite) {
+        _infinite = infinite;
+        return this;
+    }
+
+    /** Return true iff this is a search on the opponent's time. */
+    boolean ponder() {
+        return _ponder;
+    }
+
+    /** Set ponder() to PONDER and return this. */
+    SearchLimits setPonder(boolean ponder) {
+        _ponder = ponder;
+        return this;
+    }
+
+    /** Return the number of best lines to find, each with an exact
+     *  score. */
+    int multiPV() {
+        return _multiPV;
+    }
+
+    /** Set multiPV() to LINES (at least 1) and return this. */
+    SearchLimits setMultiPV(int lines) {
+        _multiPV = Math.max(1, lines);
+        return this;
+    }
+
+    /** Return true iff the search must be reproducible: it runs on one
+     *  thread and ignores the clock, so that it ends only on reaching its
+     *  depth or node budget, and the same position, table contents, and
+     *  limits always give the same result after the same nodes. */
+    boolean deterministic() {
+        return _deterministic;
+    }
+
+    /** Set deterministic() to DETERMINISTIC and return this. */
+    SearchLimits setDeterministic(boolean deterministic) {
+        _deterministic = deterministic;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d movetime %d nodes %d multipv %d"
+                             + "%s%s%s%s", _depth, _moveTime, _nodes,
+                             _multiPV,
+                             _timeLeft > 0 ? " timeleft " + _timeLeft : "",
+                             _infinite ? " infinite" : "",
+                             _ponder ? " ponder" : "",
+                             _deterministic ? " deterministic" : "");
+    }
+
+    /** Maximum depth. */
+    private int _depth;
+    /** Time budget in milliseconds, or 0. */
+    private long _moveTime;
+    /** Time left in the game in milliseconds, or 0. */
+    private long _timeLeft;
+    /** Node budget, or 0. */
+    private long _nodes;
+    /** True for a search that runs until stopped. */
+    private boolean _infinite;
+    /** True for a search on the opponent's time. */
+    private volatile boolean _ponder;
+    /** Number of best lines to find. */
+    private int _multiPV;
+    /** True for a reproducible search. */
+    private boolean _deterministic;
+}
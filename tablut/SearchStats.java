@@ -0,0 +1,219 @@
+package tablut;
+
+import java.util.Formatter;
+
+/** Counters describing one search by an AI: nodes, static evaluations,
+ *  transposition-table probes and hits, beta cutoffs by the index of the
+ *  move that caused them, and the nodes and time used by each iteration
+ *  of iterative deepening.  Each searching thread has its own counters,
+ *  so counting costs only an increment of a field; add combines them.
+ *  @author Andrew Kaplan
+ */
+class SearchStats {
+
+    /** Cutoffs by moves at index CUTOFF_SLOTS - 1 or later are counted
+     *  together. */
+    static final int CUTOFF_SLOTS = 8;
+
+    /** Reset all counters to zero. */
+    void clear() {
+        _nodes = _evals = _probes = _hits = _cutoffs = 0;
+        _depth = _score = 0;
+        _millis = 0;
+        for (int i = 0; i < CUTOFF_SLOTS; i += 1) {
+            _cutoffsAt[i] = 0;
+        }
+    }
+
+    /** Count one interior node. */
+    void countNode() {
+        _nodes += 1;
+    }
+
+    /** Count N interior nodes at once. */
+    void countNodes(long n) {
+        _nodes += n;
+    }
+
+    /** Count one static evaluation. */
+    void countEval() {
+        _evals += 1;
+    }
+
+    /** Count one table probe, which found an entry iff HIT. */
+    void countProbe(boolean hit) {
+        _probes += 1;
+        if (hit) {
+            _hits += 1;
+        }
+    }
+
+    /** Count a beta cutoff caused by the move at INDEX (0 for the first
+     *  move searched). */
+    void countCutoff(int index) {
+        _cutoffs += 1;
+        _cutoffsAt[Math.min(index, CUTOFF_SLOTS - 1)] += 1;
+    }
+
+    /** Record that iteration DEPTH completed with best move MOVE and
+     *  score SCORE (from white's point of view) and a total of NODES nodes
+     *  after MILLIS milliseconds. */
+    void iterationDone(int depth, Move move, int score, long nodes,
+                       long millis) {
+        if (depth < _iterationNodes.length) {
+            _iterationMoves[depth] = move;
+            _iterationScores[depth] = score;
+            _iterationNodes[depth] = nodes;
+            _iterationMillis[depth] = millis;
+        }
+        _depth = depth;
+        _score = score;
+        _millis = millis;
+    }
+
+    /** Add the node, evaluation, probe, and cutoff counts of OTHER
+     *  (typically a helper thread's) to mine. */
+    void add(SearchStats other) {
+        _nodes += other._nodes;
+        _evals += other._evals;
+        _probes += other._probes;
+        _hits += other._hits;
+        _cutoffs += other._cutoffs;
+        for (int i = 0; i < CUTOFF_SLOTS; i += 1) {
+            _cutoffsAt[i] += other._cutoffsAt[i];
+        }
+    }
+
+    /** Return a copy of me. */
+    SearchStats copy() {
+        SearchStats result = new SearchStats();
+        result.add(this);
+        System.arraycopy(_iterationNodes, 0, result._iterationNodes, 0,
+                         _iterationNodes.length);
+        System.arraycopy(_iterationMillis, 0, result._iterationMillis, 0,
+                         _iterationMillis.length);
+        System.arraycopy(_iterationMoves, 0, result._iterationMoves, 0,
+                         _iterationMoves.length);
+        System.arraycopy(_iterationScores, 0, result._iterationScores, 0,
+                         _iterationScores.length);
+        result._depth = _depth;
+        result._score = _score;
+        result._millis = _millis;
+        return result;
+    }
+
+    /** Return the number of interior nodes. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the depth of the last completed iteration. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the score of the last completed iteration, from white's
+     *  point of view. */
+    int score() {
+        return _score;
+    }
+
+    /** Return the time taken by iterations completed so far, in
+     *  milliseconds. */
+    long millis() {
+        return _millis;
+    }
+
+    /** Return the best move found by iteration DEPTH, or null if it did
+     *  not complete. */
+    Move iterationMove(int depth) {
+        return depth <= _depth ? _iterationMoves[depth] : null;
+    }
+
+    /** Return the score found by iteration DEPTH, from white's point of
+     *  view. */
+    int iterationScore(int depth) {
+        return depth <= _depth ? _iterationScores[depth] : 0;
+    }
+
+    /** Return the total nodes searched by the end of iteration DEPTH. */
+    long iterationNodes(int depth) {
+        return depth <= _depth ? _iterationNodes[depth] : 0;
+    }
+
+    /** Return the elapsed milliseconds at the end of iteration DEPTH. */
+    long iterationMillis(int depth) {
+        return depth <= _depth ? _iterationMillis[depth] : 0;
+    }
+
+    /** Return the effective branching factor of the last iteration: the
+     *  ratio of its nodes to those of the one before. */
+    double branchingFactor() {
+        if (_depth < 2 || _depth >= _iterationNodes.length) {
+            return 0.0;
+        }
+        long prev = _iterationNodes[_depth - 1];
+        long last = _iterationNodes[_depth] - prev;
+        long before = prev - _iterationNodes[_depth - 2];
+        return before == 0 ? 0.0 : (double) last / before;
+    }
+
+    /** Return a one-line summary. */
+    String summary() {
+        return String.format("depth %d nodes %d evals %d nps %d"
+                             + " tt %d/%d (%.0f%%) cutoffs %d"
+                             + " (first %.0f%%) ebf %.2f time %d",
+                             _depth, _nodes, _evals,
+                             _nodes * 1000 / Math.max(1, _millis),
+                             _hits, _probes, percent(_hits, _probes),
+                             _cutoffs, percent(_cutoffsAt[0], _cutoffs),
+                             branchingFactor(), _millis);
+    }
+
+    @Override
+    public String toString() {
+        Formatter out = new Formatter();
+        out.format("%s%n", summary());
+        out.format("cutoffs by move index:");
+        for (int i = 0; i < CUTOFF_SLOTS; i += 1) {
+            out.format(" %d%s:%d", i + 1, i == CUTOFF_SLOTS - 1 ? "+" : "",
+                       _cutoffsAt[i]);
+        }
+        out.format("%n");
+        for (int d = 1; d <= _depth && d < _iterationNodes.length; d += 1) {
+            out.format("iteration %d: nodes %d time %d%n", d,
+                       _iterationNodes[d] - _iterationNodes[d - 1],
+                       _iterationMillis[d] - _iterationMillis[d - 1]);
+        }
+        return out.toString();
+    }
+
+    /** Return 100 * PART / WHOLE, or 0 if WHOLE is 0. */
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0.0 : 100.0 * part / whole;
+    }
+
+    /** Interior nodes, static evaluations, table probes, table hits, and
+     *  beta cutoffs. */
+    private long _nodes, _evals, _probes, _hits, _cutoffs;
+    /** _cutoffsAt[i] counts cutoffs caused by the move at index i. */
+    private final long[] _cutoffsAt = new long[CUTOFF_SLOTS];
+    /** Total nodes at the end of each iteration, by depth. */
+    private final long[] _iterationNodes =
+        new long[SearchLimits.MAX_DEPTH + 1];
+    /** Elapsed milliseconds at the end of each iteration, by depth. */
+    private final long[] _iterationMillis =
+        new long[SearchLimits.MAX_DEPTH + 1];
+    /** Best move found by each iteration, by depth. */
+    private final Move[] _iterationMoves =
+        new Move[SearchLimits.MAX_DEPTH + 1];
+    /** Score found by each iteration, by depth. */
+    private final int[] _iterationScores =
+        new int[SearchLimits.MAX_DEPTH + 1];
+    /** Depth of the last completed iteration. */
+    private int _depth;
+    /** Score of the last completed iteration. */
+    private int _score;
+    /** Elapsed milliseconds at the end of the last iteration. */
+    private long _millis;
+}
@@ -0,0 +1,267 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Piece.*;
+import static tablut.Utils.*;
+
+/** A generator of labelled positions for tuning the evaluation, from
+ *  games of an engine against itself.  Games are played many at once on
+ *  a pool of threads, each with its own Board and AIs, and each starts
+ *  with a few random plies.  After the opening, every quiet position (one
+ *  in which the last move captured nothing, the side to move has no
+ *  capture, and the search found no forced win) is sampled with the score
+ *  of its search, unless a position with the same hash has already been
+ *  sampled: duplicates are discarded as they arise using a PositionSet.
+ *  When a game ends, its samples are labelled with the result and
+ *  written to one of several gzipped CSV shards, chosen by game number,
+ *  so that writers seldom wait for one another.  Each line of a shard is
+ *
+ *      NOTATION,SCORE,RESULT
+ *
+ *  where NOTATION is the position as given by Board.notation(), SCORE is
+ *  the search score from white's point of view, and RESULT is 1 if white
+ *  won the game and 0 if black did.
+ *  @author Andrew Kaplan
+ */
+public class SelfPlay {
+
+    /** Print a progress line after this many games. */
+    static final int REPORT_INTERVAL = 100;
+
+    /** Header line of each shard. */
+    static final String CSV_HEADER = "position,score,result";
+
+    /** The main program.  See the usage message for ARGS. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --seed={0,1}"
+                            + " --openings={0,1} --limit={0,1}"
+                            + " --engine={0,1} --shards={0,1}"
+                            + " --dedup={0,1} --output={0,1}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        try {
+            SelfPlay generator = new SelfPlay(
+                options.contains("--engine")
+                ? EngineConfig.parse(options.getFirst("--engine"))
+                : new EngineConfig(),
+                intOption(options, "--dedup", 64));
+            generator.setGames(intOption(options, "--games", 1000));
+            generator.setThreads(intOption(options, "--threads",
+                                           Runtime.getRuntime()
+                                           .availableProcessors()));
+            generator.setSeed(intOption(options, "--seed", 0));
+            generator.setOpeningPlies(intOption(options, "--openings", 8));
+            generator.setMoveLimit(intOption(options, "--limit", 100));
+            generator.run(options.contains("--output")
+                          ? options.getFirst("--output") : "selfplay",
+                          intOption(options, "--shards", 8));
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java tablut.SelfPlay [--games=N]"
+                           + " [--threads=N] [--seed=N] [--openings=PLIES]"
+                           + " [--limit=MOVES] [--engine=SETTINGS]"
+                           + " [--shards=N] [--dedup=MEGABYTES]"
+                           + " [--output=PREFIX]");
+        System.exit(1);
+    }
+
+    /** A generator using engines with settings CONFIG, discarding
+     *  duplicates with a set of about DEDUPMEGABYTES megabytes. */
+    SelfPlay(EngineConfig config, int dedupMegabytes) {
+        _config = config;
+        _seen = new PositionSet(dedupMegabytes);
+        _engines =
+            ThreadLocal.withInitial(() -> config.newPlayer(null, null));
+    }
+
+    /** Play GAMES games. */
+    void setGames(int games) {
+        _games = Math.max(1, games);
+    }
+
+    /** Play THREADS games at a time. */
+    void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Choose openings using seed SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Start each game with PLIES random moves. */
+    void setOpeningPlies(int plies) {
+        _openingPlies = Math.max(0, plies);
+    }
+
+    /** Use a move limit of LIMIT in each game. */
+    void setMoveLimit(int limit) {
+        _moveLimit = limit;
+    }
+
+    /** Play the games, writing samples to SHARDS files named
+     *  PREFIX-K.csv.gz, for K from 0, and reporting progress on the
+     *  standard output.  Return the number of positions written. */
+    long run(String prefix, int shards) throws IOException {
+        System.out.printf("engine: %s%n", _config);
+        PrintStream[] outputs = new PrintStream[Math.max(1, shards)];
+        for (int k = 0; k < outputs.length; k += 1) {
+            outputs[k] = new PrintStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(
+                    String.format("%s-%d.csv.gz", prefix, k)), 1 << 16)));
+            outputs[k].println(CSV_HEADER);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        ExecutorCompletionService<Integer> results =
+            new ExecutorCompletionService<>(pool);
+        for (int g = 0; g < _games; g += 1) {
+            int game = g;
+            results.submit(() -> playGame(game,
+                                          outputs[game % outputs.length]));
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        try {
+            for (int i = 1; i <= _games; i += 1) {
+                written += results.take().get();
+                if (i % REPORT_INTERVAL == 0 || i == _games) {
+                    report(i, written, start);
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+            for (PrintStream out : outputs) {
+                out.close();
+            }
+        }
+        for (PrintStream out : outputs) {
+            if (out.checkError()) {
+                throw error("could not write %s shards", prefix);
+            }
+        }
+        return written;
+    }
+
+    /** Print a progress line after GAMES games that have yielded WRITTEN
+     *  positions, begun at START (a System.nanoTime() value). */
+    private void report(int games, long written, long start) {
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d positions (%d duplicates,"
+                          + " %d evicted) in %.1f s (%.0f positions/s)%n",
+                          games, written, _duplicates.sum(), _seen.evictions(),
+                          secs, written / Math.max(secs, 1e-9));
+    }
+
+    /** Play game number GAME, writing its samples to OUT, and return the
+     *  number written. */
+    int playGame(int game, PrintStream out) {
+        AutoPlayer ai = _engines.get();
+        ai.newGame();
+        Board board = new Board();
+        board.setMoveLimit(_moveLimit);
+        Random openings = new Random(_seed * 1_000_003 + game);
+        for (int i = 0; i < _openingPlies && board.winner() == null; i += 1) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (moves == null) {
+                break;
+            }
+            board.makeMove(moves.get(openings.nextInt(moves.size())));
+        }
+        List<String> samples = new ArrayList<>();
+        int duplicates = 0;
+        Piece winner = board.winner();
+        while (winner == null) {
+            if (board.moveLimitReached()) {
+                winner = board.turn().opponent();
+                break;
+            }
+            ai.reset();
+            Move move = ai.search(board, _config.limits());
+            if (move == null) {
+                winner = board.turn().opponent();
+                break;
+            }
+            int score = ai.statistics().score();
+            if (!AI.isWinningScore(score) && isQuiet(board)) {
+                if (_seen.add(board.hash())) {
+                    samples.add(board.notation() + "," + score);
+                } else {
+                    duplicates += 1;
+                }
+            }
+            board.makeMove(move);
+            winner = board.winner();
+        }
+        String result = winner == WHITE ? ",1\n" : ",0\n";
+        StringBuilder lines = new StringBuilder();
+        for (String sample : samples) {
+            lines.append(sample).append(result);
+        }
+        synchronized (out) {
+            out.append(lines);
+        }
+        _duplicates.add(duplicates);
+        return samples.size();
+    }
+
+    /** Return true iff the last move on BOARD captured nothing and the
+     *  side to move on BOARD has no capture. */
+    static boolean isQuiet(Board board) {
+        if (board.lastMoveCaptured()) {
+            return false;
+        }
+        List<Move> moves = board.legalMoves(board.turn());
+        if (moves == null) {
+            return true;
+        }
+        for (Move move : moves) {
+            board.makeMove(move);
+            boolean captured = board.lastMoveCaptured();
+            board.undo();
+            if (captured) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Settings of the engines. */
+    private final EngineConfig _config;
+    /** Hashes of the positions sampled so far. */
+    private final PositionSet _seen;
+    /** Per-thread searchers. */
+    private final ThreadLocal<AutoPlayer> _engines;
+    /** Number of games, threads, opening plies, and move limit. */
+    private int _games = 1000, _threads = 1, _openingPlies = 8,
+        _moveLimit = 100;
+    /** Seed for openings. */
+    private long _seed;
+    /** Number of samples discarded as duplicates. */
+    private final LongAdder _duplicates = new LongAdder();
+}
@@ -0,0 +1,128 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static tablut.Utils.*;
+
+/** A server hosting many concurrent games, each a session on a local
+ *  TCP or Unix-domain socket with its own Controller and Board, speaking
+ *  the same command language as the standard input.  Sessions run on
+ *  virtual threads where the JVM provides them (and on a cached pool of
+ *  platform threads otherwise), since they spend most of their time
+ *  waiting for input.  Searches by automated players run on a bounded
+ *  pool of platform threads, so that CPU-heavy work cannot starve the
+ *  sessions' I/O.
+ *  @author Andrew Kaplan
+ */
+class Server {
+
+    /** Prefix of an ADDRESS (see the constructor) denoting a Unix-domain
+     *  socket. */
+    static final String UNIX_PREFIX = "unix:";
+
+    /** A server listening at ADDRESS, which is either a TCP port number on
+     *  the loopback interface or UNIX_PREFIX followed by the path of a
+     *  Unix-domain socket, and running searches on SEARCHTHREADS
+     *  threads. */
+    Server(String address, int searchThreads) {
+        if (address.startsWith(UNIX_PREFIX)) {
+            _socketPath = Path.of(address.substring(UNIX_PREFIX.length()));
+            _address = UnixDomainSocketAddress.of(_socketPath);
+        } else {
+            try {
+                _address = new InetSocketAddress(InetAddress
+                                                 .getLoopbackAddress(),
+                                                 Integer.parseInt(address));
+            } catch (IllegalArgumentException excp) {
+                throw error("bad server address: %s", address);
+            }
+            _socketPath = null;
+        }
+        _searchPool = Executors.newFixedThreadPool(Math.max(1,
+                                                            searchThreads));
+        _sessions = sessionExecutor();
+    }
+
+    /** Accept sessions until the process is terminated. */
+    void serve() throws IOException {
+        ServerSocketChannel listener;
+        if (_socketPath != null) {
+            Files.deleteIfExists(_socketPath);
+            listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            listener = ServerSocketChannel.open();
+        }
+        try (listener) {
+            listener.bind(_address);
+            System.err.printf("Listening on %s%n", _address);
+            while (true) {
+                SocketChannel channel = listener.accept();
+                _sessions.execute(() -> session(channel));
+            }
+        } finally {
+            _sessions.shutdownNow();
+            _searchPool.shutdownNow();
+        }
+    }
+
+    /** Play games with the client on CHANNEL until it quits or closes
+     *  the connection. */
+    private void session(SocketChannel channel) {
+        try (channel) {
+            InputStream in = Channels.newInputStream(channel);
+            PrintStream out = new PrintStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            Controller control =
+                new Controller(new NullView(), null,
+                               new TextReporter(out, out), new TextPlayer(),
+                               new AI(), false, in, out);
+            control.setSearchPool(_searchPool);
+            out.println(Main.VERSION);
+            control.play();
+        } catch (IOException | RuntimeException excp) {
+            System.err.printf("Session ended abnormally: %s%n", excp);
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread,
+     *  if this JVM supports them, and otherwise on a cached pool of
+     *  platform threads. */
+    private static ExecutorService sessionExecutor() {
+        try {
+            Method virtual =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "tablut-session");
+                    t.setDaemon(true);
+                    return t;
+                });
+        }
+    }
+
+    /** Address on which I listen. */
+    private final SocketAddress _address;
+    /** Path of my Unix-domain socket, or null if I use TCP. */
+    private final Path _socketPath;
+    /** Runs sessions. */
+    private final ExecutorService _sessions;
+    /** Runs searches. */
+    private final ExecutorService _searchPool;
+}
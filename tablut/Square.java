@@ -163,6 +163,13 @@ final class Square {
         return sq(posn.charAt(0) - 'a', posn.charAt(1) - '1');
     }
 
+    /** Return true iff POSN is a valid square designation (e.g. a4). */
+    static boolean isSquare(String posn) {
+        return posn.length() == 2
+            && posn.charAt(0) >= 'a' && posn.charAt(0) < 'a' + BOARD_SIZE
+            && posn.charAt(1) >= '1' && posn.charAt(1) < '1' + BOARD_SIZE;
+    }
+
     /** Return the Square with index INDEX. */
     private Square(int index) {
         _index = index;
@@ -0,0 +1,238 @@
+package tablut;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Piece.*;
+import static tablut.Utils.*;
+
+/** A headless match between two automated engines, playing many games at
+ *  once on a pool of threads, each game with its own Board and AIs.
+ *  Games come in pairs that start from the same randomly chosen opening
+ *  with colors reversed.  Reports the score with an Elo estimate and can
+ *  stop early once a sequential probability ratio test (SPRT) decides.
+ *  @author Andrew Kaplan
+ */
+public class Tournament {
+
+    /** Print a progress line after this many games. */
+    static final int REPORT_INTERVAL = 50;
+
+    /** The main program.  See the usage message for ARGS. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --seed={0,1}"
+                            + " --openings={0,1} --limit={0,1}"
+                            + " --engine1={0,1} --engine2={0,1}"
+                            + " --sprt={0,1}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        try {
+            Tournament match =
+                new Tournament(config(options, "--engine1"),
+                               config(options, "--engine2"));
+            match.setGames(intOption(options, "--games", 100));
+            match.setThreads(intOption(options, "--threads",
+                                       Runtime.getRuntime()
+                                       .availableProcessors()));
+            match.setSeed(intOption(options, "--seed", 0));
+            match.setOpeningPlies(intOption(options, "--openings", 4));
+            match.setMoveLimit(intOption(options, "--limit", 100));
+            if (options.contains("--sprt")) {
+                String[] bounds = options.getFirst("--sprt").split(",");
+                match.setSprt(Double.parseDouble(bounds[0]),
+                              Double.parseDouble(bounds[1]),
+                              bounds.length > 2
+                              ? Double.parseDouble(bounds[2]) : 0.05,
+                              bounds.length > 3
+                              ? Double.parseDouble(bounds[3]) : 0.05);
+            }
+            match.run();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            usage();
+        }
+        System.exit(0);
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java tablut.Tournament [--games=N]"
+                           + " [--threads=N] [--seed=N] [--openings=PLIES]"
+                           + " [--limit=MOVES] [--engine1=SETTINGS]"
+                           + " [--engine2=SETTINGS]"
+                           + " [--sprt=ELO0,ELO1[,ALPHA,BETA]]");
+        System.exit(1);
+    }
+
+    /** Return the engine settings given by option NAME in OPTIONS, or the
+     *  defaults. */
+    private static EngineConfig config(CommandArgs options, String name) {
+        if (options.contains(name)) {
+            return EngineConfig.parse(options.getFirst(name));
+        }
+        return new EngineConfig();
+    }
+
+    /** A match of FIRST against SECOND with default parameters. */
+    Tournament(EngineConfig first, EngineConfig second) {
+        _first = first;
+        _second = second;
+        _engines = ThreadLocal.withInitial(() -> new AutoPlayer[] {
+                first.newPlayer(null, null), second.newPlayer(null, null)
+            });
+    }
+
+    /** Play at most GAMES games (rounded up to an even number). */
+    void setGames(int games) {
+        _games = Math.max(2, games + games % 2);
+    }
+
+    /** Play THREADS games at a time. */
+    void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Choose openings using seed SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Start each pair of games with PLIES random moves. */
+    void setOpeningPlies(int plies) {
+        _openingPlies = Math.max(0, plies);
+    }
+
+    /** Use a move limit of LIMIT in each game. */
+    void setMoveLimit(int limit) {
+        _moveLimit = limit;
+    }
+
+    /** Stop as soon as an SPRT of Elo ELO0 against ELO1, with error
+     *  rates ALPHA and BETA, decides. */
+    void setSprt(double elo0, double elo1, double alpha, double beta) {
+        _sprt = true;
+        _elo0 = elo0;
+        _elo1 = elo1;
+        _alpha = alpha;
+        _beta = beta;
+    }
+
+    /** Play the match, reporting progress and the result on the standard
+     *  output, and return the final score. */
+    MatchScore run() {
+        System.out.printf("engine1: %s%nengine2: %s%n", _first, _second);
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        ExecutorCompletionService<Boolean> results =
+            new ExecutorCompletionService<>(pool);
+        for (int g = 0; g < _games; g += 1) {
+            int game = g;
+            results.submit(() -> playGame(game));
+        }
+        long start = System.nanoTime();
+        int decision = 0;
+        try {
+            for (int i = 0; i < _games && decision == 0; i += 1) {
+                Boolean won = results.take().get();
+                if (won == null) {
+                    continue;
+                }
+                _score.record(won);
+                if (_score.games() % REPORT_INTERVAL == 0) {
+                    report(start);
+                }
+                if (_sprt) {
+                    decision = _score.sprt(_elo0, _elo1, _alpha, _beta);
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            _stopped = true;
+            pool.shutdownNow();
+        }
+        report(start);
+        if (_sprt) {
+            System.out.printf("SPRT [%.1f, %.1f]: %s%n", _elo0, _elo1,
+                              decision > 0 ? "H1 accepted"
+                              : decision < 0 ? "H0 accepted"
+                              : "inconclusive");
+        }
+        return _score;
+    }
+
+    /** Print the current score, started at START (a System.nanoTime()
+     *  value), on the standard output. */
+    private void report(long start) {
+        double hours = (System.nanoTime() - start) / 3.6e12;
+        String llr = _sprt
+            ? String.format(" LLR %.2f", _score.llr(_elo0, _elo1)) : "";
+        System.out.printf("%s%s (%.0f games/hour)%n", _score, llr,
+                          _score.games() / Math.max(hours, 1e-9));
+    }
+
+    /** Play game number GAME and return true iff the first engine won, or
+     *  null if the match was stopped first.  The first engine plays black
+     *  in even-numbered games. */
+    Boolean playGame(int game) {
+        AutoPlayer[] engines = _engines.get();
+        for (AutoPlayer engine : engines) {
+            engine.newGame();
+        }
+        Board board = new Board();
+        board.setMoveLimit(_moveLimit);
+        Random openings = new Random(_seed * 1_000_003 + game / 2);
+        for (int i = 0; i < _openingPlies && board.winner() == null; i += 1) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (moves == null) {
+                break;
+            }
+            board.makeMove(moves.get(openings.nextInt(moves.size())));
+        }
+        Piece firstSide = game % 2 == 0 ? BLACK : WHITE;
+        while (board.winner() == null && !_stopped) {
+            boolean firstToMove = board.turn() == firstSide;
+            if (board.moveLimitReached()) {
+                return !firstToMove;
+            }
+            AutoPlayer engine = firstToMove ? engines[0] : engines[1];
+            engine.reset();
+            long start = System.nanoTime();
+            Move move = engine.search(board, engine.limits());
+            engine.charge((System.nanoTime() - start) / 1_000_000);
+            if (move == null) {
+                return !firstToMove;
+            }
+            board.makeMove(move);
+        }
+        if (_stopped) {
+            return null;
+        }
+        return board.winner() == firstSide;
+    }
+
+    /** The two engines' settings. */
+    private final EngineConfig _first, _second;
+    /** Per-thread searchers for the first and second engines. */
+    private final ThreadLocal<AutoPlayer[]> _engines;
+    /** Number of games, threads, opening plies, and move limit. */
+    private int _games = 100, _threads = 1, _openingPlies = 4,
+        _moveLimit = 100;
+    /** Seed for openings. */
+    private long _seed;
+    /** True iff the SPRT is used. */
+    private boolean _sprt;
+    /** SPRT hypotheses and error rates. */
+    private double _elo0, _elo1, _alpha, _beta;
+    /** The running score. */
+    private final MatchScore _score = new MatchScore();
+    /** Set when the match is over, to abandon games in progress. */
+    private volatile boolean _stopped;
+}
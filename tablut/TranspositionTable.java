@@ -0,0 +1,192 @@
+package tablut;
+
+import java.util.Arrays;
+
+/** A fixed-size table of search results, indexed by Board.hash().  Each
+ *  entry packs a score, search depth, bound type, and best move into a
+ *  single long.  The table may be shared among several searching
+ *  threads without locking: each key is stored xored with its data, so
+ *  that an entry torn by concurrent writers simply fails to match.
+ *  @author Andrew Kaplan
+ */
+class TranspositionTable {
+
+    /** Bound types: the stored score is exact, a lower bound (the search
+     *  failed high), or an upper bound (the search failed low). */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Default size of a table in megabytes. */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /** Bytes used by one entry (a key word and a data word). */
+    static final int ENTRY_BYTES = 16;
+
+    /** A new, empty table occupying about MEGABYTES megabytes. */
+    TranspositionTable(int megabytes) {
+        this(megabytes, true);
+    }
+
+    /** A new, empty table occupying about MEGABYTES megabytes if
+     *  ALLOCATE.  Otherwise, the table has no storage until resize is
+     *  called, as subclasses whose storage depends on their own fields
+     *  must do once those are set. */
+    TranspositionTable(int megabytes, boolean allocate) {
+        if (allocate) {
+            resize(megabytes);
+        }
+    }
+
+    /** A new, empty table of the default size. */
+    TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /** Discard all entries and reallocate the table to occupy about
+     *  MEGABYTES megabytes (at least one entry).  A subclass may keep a
+     *  different size (see allocate). */
+    synchronized void resize(int megabytes) {
+        long entries = Math.max(1L, (long) megabytes * (1 << 20)
+                                / ENTRY_BYTES);
+        entries = Math.min(Long.highestOneBit(entries), 1L << 30);
+        _mask = allocate((int) entries) - 1;
+        _generation = 0;
+    }
+
+    /** Return my size in megabytes. */
+    int megabytes() {
+        return (int) ((_mask + 1L) * ENTRY_BYTES >> 20);
+    }
+
+    /** Discard all entries. */
+    synchronized void clear() {
+        clearEntries();
+        _generation = 0;
+    }
+
+    /** Release any resources other than memory that I hold.  I may not
+     *  be used afterwards.  By default, does nothing. */
+    void close() {
+    }
+
+    /** Return true iff my entries outlive this program. */
+    boolean isPersistent() {
+        return false;
+    }
+
+    /** Start a new search, so that entries from previous searches are
+     *  preferred for replacement. */
+    void newSearch() {
+        _generation = (_generation + 1) & GEN_MASK;
+    }
+
+    /** Return the packed entry stored for KEY, or 0 if there is none.
+     *  Use the static accessors below to unpack the result. */
+    long probe(long key) {
+        int i = (int) key & _mask;
+        long data = dataAt(i);
+        if (data != 0 && (keyAt(i) ^ data) == key) {
+            return data;
+        }
+        return 0;
+    }
+
+    /** Record that a search of DEPTH plies from the position with hash KEY
+     *  produced SCORE, which is a bound of type BOUND, with best move
+     *  MOVE (possibly null). */
+    void store(long key, int depth, int score, int bound, Move move) {
+        int i = (int) key & _mask;
+        long old = dataAt(i);
+        boolean sameKey = old != 0 && (keyAt(i) ^ old) == key;
+        if (old != 0 && generation(old) == _generation
+            && depth(old) > depth && bound != EXACT) {
+            return;
+        }
+        int moveCode;
+        if (move != null) {
+            moveCode = move.code() + 1;
+        } else if (sameKey) {
+            moveCode = (int) (old >>> MOVE_SHIFT) & MOVE_MASK;
+        } else {
+            moveCode = 0;
+        }
+        long data = (score & 0xffffffffL)
+            | (long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) moveCode << MOVE_SHIFT
+            | (long) _generation << GEN_SHIFT;
+        setEntry(i, key ^ data, data);
+    }
+
+    /** Return the score recorded in ENTRY. */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /** Return the search depth recorded in ENTRY. */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) recorded in ENTRY. */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the best move recorded in ENTRY, or null if none. */
+    static Move move(long entry) {
+        int code = (int) (entry >>> MOVE_SHIFT) & MOVE_MASK;
+        return code == 0 ? null : Move.mv(code - 1);
+    }
+
+    /** Replace my storage with ENTRIES empty entries, a power of 2, and
+     *  return ENTRIES.  Subclasses may instead allocate a different power
+     *  of 2, returning it. */
+    int allocate(int entries) {
+        _keys = new long[entries];
+        _data = new long[entries];
+        return entries;
+    }
+
+    /** Empty all entries. */
+    void clearEntries() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_data, 0);
+    }
+
+    /** Return the stored key word of entry I. */
+    long keyAt(int i) {
+        return _keys[i];
+    }
+
+    /** Return the data word of entry I. */
+    long dataAt(int i) {
+        return _data[i];
+    }
+
+    /** Set the stored key and data words of entry I to KEY and DATA. */
+    void setEntry(int i, long key, long data) {
+        _keys[i] = key;
+        _data[i] = data;
+    }
+
+    /** Return the search generation recorded in ENTRY. */
+    private static int generation(long entry) {
+        return (int) (entry >>> GEN_SHIFT) & GEN_MASK;
+    }
+
+    /** Layout of a packed entry: the low 32 bits hold the score. */
+    private static final int
+        DEPTH_SHIFT = 32, DEPTH_MASK = 0xff,
+        BOUND_SHIFT = 40, BOUND_MASK = 0x3,
+        MOVE_SHIFT = 42, MOVE_MASK = 0x1fff,
+        GEN_SHIFT = 55, GEN_MASK = 0xff;
+
+    /** Stored keys, each xored with the corresponding data word. */
+    private long[] _keys;
+    /** Packed entries. */
+    private long[] _data;
+    /** Mask selecting an index from a key. */
+    private int _mask;
+    /** Generation of the current search. */
+    private volatile int _generation;
+}
@@ -0,0 +1,388 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Evaluation.*;
+import static tablut.Utils.*;
+
+/** A tuner of the weights of Evaluation by logistic regression on game
+ *  results ("Texel tuning").  The positions are read from files in the
+ *  form written by SelfPlay (gzipped if their names end in ".gz") and
+ *  reduced in batches to their features (see BatchEvaluation), which
+ *  are held column by column in primitive arrays.  The predicted result
+ *  of a position with evaluation S is sigmoid(K * S).  K is first
+ *  chosen to fit the initial weights best, after which the weights are
+ *  adjusted by full-batch gradient descent (with Adam step sizes) to
+ *  minimize the mean squared error of the predictions.  Each pass over
+ *  the data is divided among a pool of threads, each handling a
+ *  contiguous range of positions with loops over single columns that
+ *  the JIT compiler can vectorize.
+ *  @author Andrew Kaplan
+ */
+public class Tuner {
+
+    /** Adam decay rates of the first and second moments, and the
+     *  constant that keeps its steps finite. */
+    static final double BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-8;
+
+    /** Number of positions reduced to features at once when reading. */
+    static final int BATCH_SIZE = 4096;
+
+    /** Print a progress line after this many iterations. */
+    static final int REPORT_INTERVAL = 100;
+
+    /** The main program.  See the usage message for ARGS. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--threads={0,1} --iterations={0,1}"
+                            + " --rate={0,1} --initial={0,1}"
+                            + " --output={0,1} --={1,}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            Evaluation initial = options.contains("--initial")
+                ? Evaluation.load(Path.of(options.getFirst("--initial")))
+                : new Evaluation();
+            Tuner tuner = new Tuner(threads);
+            long start = System.nanoTime();
+            for (String name : options.get("--")) {
+                tuner.read(Path.of(name));
+            }
+            System.out.printf("%d positions read in %.1f s%n", tuner.size(),
+                              (System.nanoTime() - start) / 1e9);
+            int iterations = 1000;
+            double rate = 1.0;
+            if (options.contains("--iterations")) {
+                iterations =
+                    Integer.parseInt(options.getFirst("--iterations"));
+            }
+            if (options.contains("--rate")) {
+                rate = Double.parseDouble(options.getFirst("--rate"));
+            }
+            Evaluation tuned = tuner.tune(initial, iterations, rate);
+            String output = options.contains("--output")
+                ? options.getFirst("--output") : "tablut.weights";
+            try (PrintStream out =
+                 new PrintStream(new FileOutputStream(output))) {
+                tuned.write(out, String.format("tuned on %d positions, K"
+                                               + " = %.6g, error %.6f",
+                                               tuner.size(), tuner._k,
+                                               tuner.meanError(
+                                                   tuned.weights())));
+            }
+            tuner.shutdown();
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java tablut.Tuner [--threads=N]"
+                           + " [--iterations=N] [--rate=R]"
+                           + " [--initial=WEIGHTS] [--output=WEIGHTS]"
+                           + " FILE...");
+        System.exit(1);
+    }
+
+    /** A tuner, initially with no positions, computing on THREADS
+     *  threads. */
+    Tuner(int threads) {
+        _threads = Math.max(1, threads);
+        _pool = Executors.newFixedThreadPool(_threads, r -> {
+                Thread t = new Thread(r, "tablut-tuner");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    /** Release my threads. */
+    void shutdown() {
+        _pool.shutdown();
+    }
+
+    /** Return the number of positions read. */
+    int size() {
+        return _size;
+    }
+
+    /** Add the positions in FILE, in the form written by SelfPlay.
+     *  Positions are packed into batches of BATCH_SIZE and reduced to
+     *  features by BatchEvaluation. */
+    void read(Path file) throws IOException {
+        InputStream in = new FileInputStream(file.toFile());
+        if (file.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        Board board = new Board();
+        byte[] batch = BatchEvaluation.newBatch(BATCH_SIZE);
+        float[] results = new float[BATCH_SIZE];
+        int[][] features = new int[NUM_FEATURES][BATCH_SIZE];
+        int count = 0;
+        try (BufferedReader lines = new BufferedReader(
+                 new InputStreamReader(in, StandardCharsets.ISO_8859_1))) {
+            int lineNum = 0;
+            for (String line = lines.readLine(); line != null;
+                 line = lines.readLine()) {
+                lineNum += 1;
+                if (line.equals(SelfPlay.CSV_HEADER) || line.isEmpty()) {
+                    continue;
+                }
+                int comma = line.lastIndexOf(',');
+                if (comma < 0) {
+                    throw error("%s: bad line %d", file, lineNum);
+                }
+                String result = line.substring(comma + 1);
+                if (!result.equals("0") && !result.equals("1")) {
+                    throw error("%s: bad result in line %d", file, lineNum);
+                }
+                board.setPosition(line.substring(0, line.indexOf(',')));
+                BatchEvaluation.pack(board, batch, count);
+                results[count] = result.charAt(0) - '0';
+                count += 1;
+                if (count == BATCH_SIZE) {
+                    addBatch(batch, results, count, features);
+                    count = 0;
+                }
+            }
+        }
+        addBatch(batch, results, count, features);
+    }
+
+    /** Add the first COUNT positions packed in BATCH, whose results are
+     *  in RESULTS, using FEATURES as scratch space. */
+    private void addBatch(byte[] batch, float[] results, int count,
+                          int[][] features) {
+        BatchEvaluation.features(batch, count, features);
+        ensureCapacity(_size + count);
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            float[] column = _features[k];
+            int[] values = features[k];
+            for (int i = 0; i < count; i += 1) {
+                column[_size + i] = values[i];
+            }
+        }
+        System.arraycopy(results, 0, _results, _size, count);
+        _size += count;
+    }
+
+    /** Add a position with features FEATURES and result RESULT (1 for a
+     *  white win, 0 for a black win). */
+    void add(int[] features, float result) {
+        ensureCapacity(_size + 1);
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            _features[k][_size] = features[k];
+        }
+        _results[_size] = result;
+        _size += 1;
+    }
+
+    /** Make room for at least SIZE positions. */
+    private void ensureCapacity(int size) {
+        if (size > _results.length) {
+            int capacity = Math.max(size, Math.max(1024, 2 * _size));
+            _results = Arrays.copyOf(_results, capacity);
+            for (int k = 0; k < NUM_FEATURES; k += 1) {
+                _features[k] = Arrays.copyOf(_features[k], capacity);
+            }
+        }
+    }
+
+    /** Return weights fitted to my positions, starting from INITIAL and
+     *  taking ITERATIONS steps with learning rate RATE (roughly, the
+     *  largest change in a weight per step), and reporting progress on
+     *  the standard output. */
+    Evaluation tune(Evaluation initial, int iterations, double rate) {
+        if (_size == 0) {
+            throw error("no positions to tune on");
+        }
+        double[] weights = Arrays.stream(initial.weights())
+            .asDoubleStream().toArray();
+        _k = fitK(weights);
+        System.out.printf("K = %.6g, initial error %.6f%n", _k,
+                          meanError(weights));
+        double[] m = new double[NUM_FEATURES], v = new double[NUM_FEATURES];
+        double[] gradient = new double[NUM_FEATURES];
+        long start = System.nanoTime();
+        for (int t = 1; t <= iterations; t += 1) {
+            double err = pass(weights, gradient);
+            for (int k = 0; k < NUM_FEATURES; k += 1) {
+                m[k] = BETA1 * m[k] + (1 - BETA1) * gradient[k];
+                v[k] = BETA2 * v[k]
+                    + (1 - BETA2) * gradient[k] * gradient[k];
+                double mHat = m[k] / (1 - Math.pow(BETA1, t)),
+                    vHat = v[k] / (1 - Math.pow(BETA2, t));
+                weights[k] -= rate * mHat / (Math.sqrt(vHat) + EPSILON);
+            }
+            if (t % REPORT_INTERVAL == 0 || t == iterations) {
+                System.out.printf("iteration %d: error %.6f (%.1f s)%n", t,
+                                  err, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        int[] result = new int[NUM_FEATURES];
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            result[k] = (int) Math.round(weights[k]);
+        }
+        return new Evaluation(result);
+    }
+
+    /** Return the mean squared error of the predictions made with
+     *  WEIGHTS and the current K. */
+    double meanError(int[] weights) {
+        return meanError(Arrays.stream(weights).asDoubleStream().toArray());
+    }
+
+    /** Return the mean squared error of the predictions made with
+     *  WEIGHTS and the current K. */
+    private double meanError(double[] weights) {
+        return pass(weights, null);
+    }
+
+    /** Return the K that minimizes the error with WEIGHTS, found by a
+     *  scan over powers of ten followed by a golden-section search. */
+    private double fitK(double[] weights) {
+        double best = 1e-6, bestErr = Double.MAX_VALUE;
+        for (double k = 1e-6; k <= 1; k *= 10) {
+            _k = k;
+            double err = meanError(weights);
+            if (err < bestErr) {
+                best = k;
+                bestErr = err;
+            }
+        }
+        double lo = best / 10, hi = best * 10;
+        final double phi = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 40; i += 1) {
+            double k1 = hi - phi * (hi - lo), k2 = lo + phi * (hi - lo);
+            _k = k1;
+            double err1 = meanError(weights);
+            _k = k2;
+            double err2 = meanError(weights);
+            if (err1 < err2) {
+                hi = k2;
+            } else {
+                lo = k1;
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    /** Return the mean squared error of the predictions made with
+     *  WEIGHTS, and, if GRADIENT is not null, set it to the gradient of
+     *  the error with respect to the weights.  The positions are divided
+     *  among my threads. */
+    private double pass(double[] weights, double[] gradient) {
+        float[] w = new float[NUM_FEATURES];
+        for (int k = 0; k < NUM_FEATURES; k += 1) {
+            w[k] = (float) weights[k];
+        }
+        float k = (float) _k;
+        int chunk = (_size + _threads - 1) / _threads;
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        for (int lo = 0; lo < _size; lo += chunk) {
+            int start = lo, end = Math.min(_size, lo + chunk);
+            tasks.add(() -> partialSums(w, k, start, end,
+                                           gradient != null));
+        }
+        double err = 0;
+        if (gradient != null) {
+            Arrays.fill(gradient, 0);
+        }
+        try {
+            for (Future<double[]> part : _pool.invokeAll(tasks)) {
+                double[] sums = part.get();
+                err += sums[NUM_FEATURES];
+                if (gradient != null) {
+                    for (int j = 0; j < NUM_FEATURES; j += 1) {
+                        gradient[j] += sums[j];
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        }
+        if (gradient != null) {
+            for (int j = 0; j < NUM_FEATURES; j += 1) {
+                gradient[j] *= -2 * _k / _size;
+            }
+        }
+        return err / _size;
+    }
+
+    /** Return, for the positions from START to END-1, the sums of
+     *  e * p * (1 - p) * feature j, for each j, followed by the sum of
+     *  e * e, where p is the prediction made with weights W and scale K,
+     *  and e is the result less p.  The feature sums are 0 unless
+     *  GRADIENT. */
+    private double[] partialSums(float[] w, float k, int start, int end,
+                           boolean gradient) {
+        int n = end - start;
+        float[] s = new float[n];
+        for (int j = 0; j < NUM_FEATURES; j += 1) {
+            float wj = w[j];
+            float[] column = _features[j];
+            for (int i = 0; i < n; i += 1) {
+                s[i] += wj * column[start + i];
+            }
+        }
+        double[] sums = new double[NUM_FEATURES + 1];
+        double err = 0;
+        for (int i = 0; i < n; i += 1) {
+            float p = (float) (1 / (1 + Math.exp(-k * s[i])));
+            float e = _results[start + i] - p;
+            err += e * e;
+            s[i] = e * p * (1 - p);
+        }
+        sums[NUM_FEATURES] = err;
+        if (gradient) {
+            for (int j = 0; j < NUM_FEATURES; j += 1) {
+                float[] column = _features[j];
+                double total = 0;
+                for (int i = 0; i < n; i += 1) {
+                    total += s[i] * column[start + i];
+                }
+                sums[j] = total;
+            }
+        }
+        return sums;
+    }
+
+    /** Number of threads used. */
+    private final int _threads;
+    /** Pool of threads computing errors and gradients. */
+    private final ExecutorService _pool;
+    /** Number of positions. */
+    private int _size;
+    /** _features[k][i] is feature k of position i. */
+    private final float[][] _features = new float[NUM_FEATURES][0];
+    /** _results[i] is the result of position i. */
+    private float[] _results = new float[0];
+    /** Scale of evaluations in the predictions. */
+    private double _k;
+}
@@ -4,7 +4,25 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /** The suite of all JUnit tests for the enigma package.
  *  @author Andrew Kaplan
@@ -127,6 +145,646 @@ public class UnitTest {
         b.undo();
         assertSame(b.get('a', '4'), Piece.BLACK);
     }
-}
 
+    @Test
+    public void testCopyAndHash() {
+        Board b = new Board();
+        long initial = b.hash();
+        b.makeMove(Move.mv("a4-1"));
+        b.makeMove(Move.mv("e3-d"));
+
+        Board c = new Board(b);
+        assertSame(Piece.BLACK, c.get('a', '1'));
+        assertSame(Piece.WHITE, c.get('d', '3'));
+        assertEquals(b.hash(), c.hash());
+
+        c.undo();
+        c.undo();
+        assertEquals(initial, c.hash());
+        assertSame(Piece.WHITE, b.get('d', '3'));
+        assertEquals(2, b.moveCount());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram h = new Histogram();
+        for (int v = 1; v <= 1000; v += 1) {
+            h.record(v);
+        }
+        assertEquals(1000, h.count());
+        assertEquals(1000, h.max());
+        assertEquals(500, h.percentile(50), 500 * 0.04);
+        assertEquals(990, h.percentile(99), 990 * 0.04);
+        assertEquals(10, h.percentile(1));
+    }
+
+    @Test
+    public void testMatchScore() {
+        MatchScore score = new MatchScore();
+        assertEquals(0.0, score.elo(), 1e-9);
+        for (int i = 0; i < 30; i += 1) {
+            score.record(i % 4 != 0);
+        }
+        assertEquals(30, score.games());
+        assertEquals(0.733, score.score(), 0.001);
+        assertEquals(175.7, score.elo(), 0.1);
+        assertEquals(0, score.sprt(0, 50, 0.05, 0.05));
+        for (int i = 0; i < 20; i += 1) {
+            score.record(true);
+        }
+        assertEquals(1, score.sprt(0, 50, 0.05, 0.05));
+    }
+
+    @Test
+    public void testMoveParsing() throws InterruptedException {
+        assertSame(Move.mv(Square.sq("e3"), Square.sq("e7")), Move.mv("e3-7"));
+        assertSame(Move.mv(Square.sq("e3"), Square.sq("a3")), Move.mv("e3-a"));
+        assertNull(Move.mv("e3-3"));
+        assertNull(Move.mv("e3-e"));
+        assertNull(Move.mv("j3-4"));
+        assertNull(Move.mv("e3-45"));
+        assertFalse(Move.isGrammaticalMove("e3+4"));
+
+        Thread[] threads = new Thread[4];
+        boolean[] ok = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            int k = t;
+            threads[t] = new Thread(() -> {
+                boolean same = true;
+                for (int i = 0; i < 10000; i += 1) {
+                    same &= Move.mv("a4-1") == Move.mv("a4-1")
+                        && Move.mv("h5-6").to() == Square.sq("h6");
+                }
+                ok[k] = same;
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t].join();
+            assertTrue(ok[t]);
+        }
+    }
+
+    @Test
+    public void testNotation() {
+        Board b = new Board();
+        assertEquals("3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 B 0",
+                     b.notation());
+        b.makeMove(Move.mv("h5-6"));
+        b.makeMove(Move.mv("g5-2"));
+        Board c = Board.fromNotation(b.notation().toLowerCase());
+        assertEquals(b.toString(), c.toString());
+        assertEquals(b.hash(), c.hash());
+        assertEquals(2, c.moveCount());
+        c.undo();
+        assertEquals(b.hash(), c.hash());
+        try {
+            Board.fromNotation("9/9/9/9/9/9/9/9/9 W");
+            fail("accepted a position with no king");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testMoveCounter() {
+        String start = new Board().notation();
+        String pieces = start.substring(0, start.indexOf(' '));
+        Board b = Board.fromNotation(pieces + " W 1000001");
+        b.makeMove(Move.mv("e3-c"));
+        assertEquals(1000002, b.moveCount());
+        b.undo();
+        assertEquals(pieces + " W 1000001", b.notation());
+        b.setMoveLimit(10);
+        for (String count : new String[] { "-1", "21", "2147483647",
+                                           "99999999999" }) {
+            try {
+                b.setPosition(pieces + " B " + count);
+                fail("accepted move counter " + count);
+            } catch (IllegalArgumentException excp) {
+                assertEquals(pieces + " W 1000001", b.notation());
+            }
+        }
+        b.setPosition(pieces + " B 20");
+        assertTrue(b.moveLimitReached());
+    }
+
+    @Test
+    public void testGameRecord() throws IOException {
+        Path file = Files.createTempFile("tablut", ".rec");
+        try {
+            GameRecordWriter out =
+                new GameRecordWriter(file.toString(), true);
+            Board b = new Board();
+            out.begin(b.moveLimit(), 61, false, true);
+            for (String move : new String[] { "h5-6", "g5-2", "e8-c" }) {
+                b.makeMove(Move.mv(move));
+                out.move(Move.mv(move), 3, 10);
+            }
+            b.undo();
+            out.undo();
+            out.end(null);
+            out.begin(40, 0, true, true);
+            out.move(Move.mv("a4-1"), GameRecord.NO_SCORE, 0);
+            out.close();
+
+            GameRecordReader in = new GameRecordReader(file);
+            Board replayed = new Board();
+            assertTrue(in.next());
+            assertEquals(61, in.seed());
+            assertTrue(in.annotated() && in.automated(Piece.BLACK));
+            assertFalse(in.automated(Piece.WHITE));
+            in.replay(replayed);
+            assertEquals(b.hash(), replayed.hash());
+            assertEquals(2, replayed.moveCount());
+            assertSame(Piece.EMPTY, in.winner());
+            assertTrue(in.next());
+            assertEquals(40, in.moveLimit());
+            in.replay(replayed);
+            assertSame(Piece.BLACK, replayed.get('a', '1'));
+            assertFalse(in.next());
+            in.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPositionSet() {
+        PositionSet set = new PositionSet(0);
+        assertEquals(PositionSet.PROBE_LIMIT, set.capacity());
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        for (long h = 1; h < set.capacity(); h += 1) {
+            assertTrue(set.add(h * 0x123456789L));
+        }
+        assertEquals(set.capacity(), set.size());
+        assertFalse(set.add(0x123456789L));
+        assertTrue(set.add(-1));
+        assertEquals(1, set.evictions());
+    }
+
+    @Test
+    public void testEvaluation() throws IOException {
+        Board b = new Board();
+        assertEquals(100 * (9 - 16), new Evaluation().score(b));
+        int[] features = new int[Evaluation.NUM_FEATURES];
+        Evaluation.features(b, features);
+        assertArrayEquals(new int[] { 9, 16, 4, 0, 0, 1 }, features);
+        Path file = Files.createTempFile("tablut", ".weights");
+        try {
+            try (PrintStream out = new PrintStream(file.toFile())) {
+                new Evaluation(new int[] { 1, 2, 3, 4, 5, 6 })
+                    .write(out, "test");
+            }
+            assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6 },
+                              Evaluation.load(file).weights());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBatchEvaluation() {
+        Evaluation eval = new Evaluation(new int[] { 7, -5, 3, 11, -13, 2 });
+        Random random = new Random(6);
+        Board b = new Board();
+        int count = 200;
+        byte[] batch = BatchEvaluation.newBatch(count);
+        int[] expected = new int[count];
+        for (int i = 0; i < count; i += 1) {
+            if (b.winner() != null || !b.hasMove(b.turn())) {
+                b.init();
+            }
+            List<Move> moves = b.legalMoves(b.turn());
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            BatchEvaluation.pack(b, batch, i);
+            expected[i] = eval.score(b);
+        }
+        assertArrayEquals(expected, BatchEvaluation.scores(eval, batch,
+                                                           count));
+        int[][] scalar = new int[Evaluation.NUM_FEATURES][count];
+        BatchEvaluation.scalarFeatures(batch, count, scalar);
+        int[] scalarScores = new int[count];
+        BatchEvaluation.scalarScores(eval.weights(), scalar, count,
+                                     scalarScores);
+        assertArrayEquals(expected, scalarScores);
+    }
+
+    @Test
+    public void testMoveBuffer() {
+        Random random = new Random(45);
+        Board b = new Board();
+        Move[] buffer = new Move[Board.MAX_MOVES];
+        for (int i = 0; i < 300; i += 1) {
+            if (b.winner() != null || !b.hasMove(b.turn())) {
+                b.init();
+            }
+            List<Move> moves = b.legalMoves(b.turn());
+            int n = b.legalMoves(buffer);
+            assertEquals(moves.size(), n);
+            assertTrue(moves.containsAll(Arrays.asList(buffer).subList(0, n)));
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testMCTS() {
+        Board b = Board.fromNotation("4B4/9/9/9/4K4/9/9/9/4B4 W");
+        MCTS player = new MCTS();
+        player.setThreads(2);
+        Move move = player.search(b, new SearchLimits().setNodes(500));
+        b.makeMove(move);
+        assertSame(Piece.WHITE, b.winner());
+        b = new Board();
+        move = player.search(b, new SearchLimits().setNodes(500));
+        assertTrue(b.isLegal(move));
+        assertEquals(500, player.statistics().nodes(), 1);
+    }
+
+    @Test
+    public void testAnalysisProblems() {
+        String start = new Board().notation();
+        Analysis.Problem p =
+            new Analysis.Problem(start + "; bm h5-6 A4-3; score 10;"
+                                 + " id \"first test\"", 3);
+        assertEquals("first test", p.id());
+        assertTrue(p.solvedBy(Move.mv("a4-3"), 10));
+        assertFalse(p.solvedBy(Move.mv("h5-6"), 9));
+        assertFalse(p.solvedBy(Move.mv("d1-2"), 100));
+        p = new Analysis.Problem(start + "; score -5; id two words;", 4);
+        assertEquals("two words", p.id());
+        assertTrue(p.solvedBy(Move.mv("d1-2"), -6));
+        assertFalse(p.solvedBy(Move.mv("d1-2"), -4));
+        p = new Analysis.Problem(start + "; score 0", 5);
+        assertEquals("5", p.id());
+        assertTrue(p.solvedBy(Move.mv("d1-2"), 0));
+        assertFalse(p.solvedBy(Move.mv("d1-2"), 1));
+        assertFalse(p.solvedBy(Move.mv("d1-2"), -1));
+        assertTrue(new Analysis.Problem(start, 6)
+                   .solvedBy(Move.mv("d1-2"), -1000));
+        for (String bad : new String[] {
+                "; bm z0-1", "; score", "; score x", "; frob 1",
+                "; bm a4-b5" }) {
+            try {
+                new Analysis.Problem(start + bad, 7);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+        try {
+            new Analysis.Problem("9/9 W 0; bm a4-3", 8);
+            fail("accepted a bad position");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testEngineConfig() {
+        EngineConfig config =
+            EngineConfig.parse("engine=mcts threads=3, nodes=100");
+        AutoPlayer player = config.newPlayer(null, null);
+        assertTrue(player instanceof MCTS);
+        assertSame(config, player.config());
+        assertEquals(100, config.limits().nodes());
+        assertTrue(new EngineConfig().newPlayer(null, null) instanceof AI);
+        try {
+            EngineConfig.parse("engine=none");
+            fail("accepted an unknown engine");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testGameClock() {
+        AutoPlayer ai = EngineConfig.parse("gametime=2000").newPlayer(null,
+                                                                     null);
+        Board b = Board.fromNotation(Bench.POSITIONS.get(0));
+        b.setMoveLimit(50);
+        assertEquals(2000, ai.limits().timeLeft());
+        assertEquals(SearchLimits.MAX_DEPTH, ai.limits().depth());
+        ai.search(b, ai.limits());
+        long millis = ai.statistics().millis();
+        assertTrue(millis < 1000);
+        ai.charge(millis);
+        assertEquals(2000 - millis, ai.limits().timeLeft());
+        ai.newGame();
+        assertEquals(2000, ai.limits().timeLeft());
+    }
+
+    @Test
+    public void testTimeAllotment() {
+        Board b = new Board();
+        b.setMoveLimit(100);
+        SearchLimits limits = new SearchLimits().setTimeLeft(60000);
+        assertEquals(2000, limits.targetMillis(b));
+        assertEquals(8000, limits.maximumMillis(b));
+        limits.setMoveTime(1000);
+        assertEquals(1000, limits.targetMillis(b));
+        assertEquals(1000, limits.maximumMillis(b));
+        b.setMoveLimit(1);
+        limits.setMoveTime(0);
+        assertEquals(45000, limits.targetMillis(b));
+        assertEquals(45000, limits.maximumMillis(b));
+        limits.setTimeLeft(0).setMoveTime(300);
+        assertEquals(300, limits.targetMillis(b));
+        assertEquals(0, new SearchLimits().maximumMillis(b));
+
+        assertEquals(100, AI.timePercent(1, 0));
+        assertEquals(150, AI.timePercent(4, 0));
+        assertEquals(100, AI.timePercent(4, 2));
+        assertEquals(50, AI.timePercent(4, 3));
+
+        Board only = Board.fromNotation("BW7/9/W8/9/4K4/9/9/9/9 B 0");
+        assertEquals(1, only.legalMoves(Piece.BLACK).size());
+        AI ai = new AI();
+        ai.search(only, new SearchLimits().setTimeLeft(600000));
+        assertEquals(1, ai.statistics().depth());
+    }
+
+    @Test
+    public void testDeterministicSearch() {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        assertEquals(Bench.run(2, sink), Bench.run(2, sink));
+        AI ai = new AI();
+        ai.setThreads(4);
+        SearchLimits limits =
+            new SearchLimits().setNodes(3000).setDeterministic(true);
+        Board b = Board.fromNotation(Bench.POSITIONS.get(3));
+        Move first = ai.search(b, limits);
+        long nodes = ai.statistics().nodes();
+        ai.newGame();
+        assertSame(first, ai.search(b, limits));
+        assertEquals(nodes, ai.statistics().nodes());
+        assertEquals(3000, nodes);
+    }
+
+    @Test
+    public void testMultiPV() {
+        for (int p = 3; p <= 4; p += 1) {
+            Board b = Board.fromNotation(Bench.POSITIONS.get(p));
+            int sense = b.turn() == Piece.WHITE ? 1 : -1;
+            AI ai = new AI();
+            ai.setEvaluation(new Evaluation());
+            ai.search(b, new SearchLimits().setDepth(3).setMultiPV(4));
+            List<AI.Line> lines = ai.lines();
+            assertEquals(4, lines.size());
+            AI single = new AI();
+            single.setEvaluation(new Evaluation());
+            for (int k = 0; k < lines.size(); k += 1) {
+                AI.Line line = lines.get(k);
+                if (k > 0) {
+                    assertNotSame(lines.get(k - 1).move(), line.move());
+                    assertTrue(line.score() <= lines.get(k - 1).score());
+                }
+                b.makeMove(line.move());
+                single.newGame();
+                single.search(b, new SearchLimits().setDepth(2));
+                assertEquals(line.score(),
+                             sense * single.statistics().score());
+                b.undo();
+            }
+        }
+    }
+
+    @Test
+    public void testStoppedMultiPV() {
+        Board b = Board.fromNotation(Bench.POSITIONS.get(4));
+        AI ai = new AI();
+        ai.setEvaluation(new Evaluation());
+        for (int nodes = 2000; nodes <= 20000; nodes += 2000) {
+            ai.newGame();
+            ai.search(b, new SearchLimits().setMultiPV(4).setNodes(nodes)
+                      .setDeterministic(true));
+            assertEquals(4, ai.lines().size());
+        }
+    }
+
+    @Test
+    public void testMappedTable() throws IOException {
+        Path file = Files.createTempFile("tablut", ".tt");
+        try {
+            long key = new Board().hash();
+            MappedTable table = new MappedTable(file, 2);
+            table.store(key, 5, 42, TranspositionTable.EXACT, null);
+            table.force();
+            MappedTable other = new MappedTable(file, 1);
+            assertEquals(2, other.megabytes());
+            long entry = other.probe(key);
+            assertEquals(42, TranspositionTable.score(entry));
+            assertEquals(5, TranspositionTable.depth(entry));
+            table.store(key + 1, 3, 7, TranspositionTable.EXACT, null);
+            assertEquals(7, TranspositionTable.score(other.probe(key + 1)));
+            other.close();
+            table.close();
+            try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4), 0);
+            }
+            table = new MappedTable(file, 1);
+            assertEquals(1, table.megabytes());
+            assertEquals(0, table.probe(key));
+            assertEquals(MappedTable.HEADER_SIZE + 2 * (1 << 20),
+                         Files.size(file));
+            table.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEngineOptionsWhileSearching() {
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        Engine engine = new Engine(output::add);
+        engine.go(new Board(), new SearchLimits().setInfinite(true));
+        try {
+            engine.setOption("multipv", "2");
+            fail("set an option during a search");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        engine.stop();
+        assertTrue(output.get(output.size() - 1).startsWith("bestmove "));
+        engine.setOption("multipv", "2");
+        engine.shutdown();
+    }
+
+    @Test
+    public void testLineReader() {
+        LineReader reader = new LineReader(input("a b\r\n\n  # c\r\nd"));
+        assertEquals("a b", reader.readLine());
+        assertEquals("", reader.readLine());
+        assertEquals("  # c", reader.readLine());
+        assertEquals("d", reader.readLine());
+        assertNull(reader.readLine());
+        reader = new LineReader(input("e\r\n"));
+        assertEquals("e", reader.readLine());
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testCommandWords() {
+        assertEquals(Arrays.asList("auto", "white", "depth=3"),
+                     Arrays.asList(Controller.words("auto  white\tdepth=3")));
+        assertEquals(Arrays.asList("quit"),
+                     Arrays.asList(Controller.words("quit")));
+    }
+
+    @Test
+    public void testBadCommands() {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream()),
+            err = new PrintStream(errors, true);
+        String script = "manual white\r\n\n   \n# only a comment\n"
+            + "quit now\nseed\nlimit x\nundo 2\ndump notation more\n"
+            + "auto green\nfrobnicate\ntoggle z9\nseed 12 # fine\r\n"
+            + "quit";
+        Controller control =
+            new Controller(new NullView(), null, new TextReporter(out, err),
+                           new TextPlayer(), new AI(), false,
+                           input(script), out);
+        control.play();
+        String[] lines = errors.toString().trim().split("\\R+");
+        assertEquals(Arrays.asList("Error: Bad command: quit now",
+                                   "Error: Bad command: seed",
+                                   "Error: Bad command: limit x",
+                                   "Error: Bad command: undo 2",
+                                   "Error: Bad command: dump notation more",
+                                   "Error: Bad command: auto green",
+                                   "Error: Bad command: frobnicate",
+                                   "Error: Bad command: toggle z9"),
+                     Arrays.asList(lines));
+    }
+
+    /** Return a stream reading TEXT as ASCII. */
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets
+                                                      .US_ASCII));
+    }
+
+    @Test
+    public void testBoardFootprint() throws IllegalAccessException {
+        Board b = new Board();
+        long initial = b.hash();
+        Random random = new Random(61);
+        int moves;
+        for (moves = 0; moves < 200 && b.winner() == null; moves += 1) {
+            List<Move> legal = b.legalMoves(b.turn());
+            if (legal == null) {
+                break;
+            }
+            b.makeMove(legal.get(random.nextInt(legal.size())));
+        }
+        long bytes = footprint(b);
+        assertTrue("board uses " + bytes + " bytes after " + moves
+                   + " moves", bytes <= 256 + 32 * moves);
+        for (int i = 0; i < moves; i += 1) {
+            b.undo();
+        }
+        assertEquals(initial, b.hash());
+        assertEquals(new Board().toString(), b.toString());
+    }
+
+    @Test
+    public void testRepetitionWindow() {
+        Board b = new Board();
+        long[] hashes = new long[400];
+        Move[] moves = new Move[hashes.length];
+        hashes[0] = b.hash();
+        Random random = new Random(50);
+        for (int i = 0; i < 5000; i += 1) {
+            int n = b.moveCount();
+            List<Move> legal =
+                b.winner() == null ? b.legalMoves(b.turn()) : null;
+            if (n > 0 && (legal == null || n == hashes.length - 1
+                          || random.nextInt(3) == 0)) {
+                b.undo();
+                continue;
+            }
+            Move move = legal.get(random.nextInt(legal.size()));
+            if (n > 1 && random.nextBoolean()) {
+                Move last = moves[n - 2], back = Move.mv(last.to(),
+                                                         last.from());
+                move = legal.contains(back) ? back : move;
+            }
+            b.makeMove(move);
+            moves[n] = move;
+            hashes[n + 1] = b.hash();
+            boolean repeated = false;
+            for (int k = n - 1; k >= 0; k -= 2) {
+                repeated |= hashes[k] == b.hash();
+            }
+            assertEquals(repeated, b.repeatedPosition());
+            if (random.nextInt(20) == 0) {
+                b = new Board(b);
+            }
+        }
+    }
+
+    /** Return an estimate of the bytes used by OBJ and the objects it
+     *  alone refers to, assuming 12-byte headers and 4-byte references
+     *  (as with compressed pointers), in the manner of JOL.  Enumerals
+     *  and Squares are shared, and so not counted. */
+    private static long footprint(Object obj) throws IllegalAccessException {
+        Class<?> cls = obj.getClass();
+        if (cls.isArray()) {
+            Class<?> elt = cls.getComponentType();
+            int n = Array.getLength(obj);
+            long size = align(16 + (long) n * fieldSize(elt));
+            if (!elt.isPrimitive()) {
+                for (int i = 0; i < n; i += 1) {
+                    Object member = Array.get(obj, i);
+                    size += member == null ? 0 : referentSize(member);
+                }
+            }
+            return size;
+        }
+        long size = 12, referents = 0;
+        for (; cls != null; cls = cls.getSuperclass()) {
+            for (Field f : cls.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+                size += fieldSize(f.getType());
+                if (!f.getType().isPrimitive()) {
+                    f.setAccessible(true);
+                    Object member = f.get(obj);
+                    referents += member == null ? 0 : referentSize(member);
+                }
+            }
+        }
+        return align(size) + referents;
+    }
 
+    /** Return the footprint of OBJ, a field or element value, or 0 if it
+     *  is shared. */
+    private static long referentSize(Object obj)
+        throws IllegalAccessException {
+        if (obj instanceof Enum || obj instanceof Square) {
+            return 0;
+        }
+        assertTrue("unexpected " + obj.getClass(), obj.getClass().isArray()
+                   || obj.getClass().getPackageName().equals("tablut"));
+        return footprint(obj);
+    }
+
+    /** Return the size of a field of type TYPE. */
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 4;
+    }
+
+    /** Return SIZE rounded up to a multiple of 8. */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -3,6 +3,8 @@ package tablut;
 import java.io.InputStream;
 import java.io.IOException;
 
+import ucb.util.CommandArgs;
+
 /** Miscellaneous utilties.
  *  @author P. N. Hilfinger */
 
@@ -32,4 +34,18 @@ class Utils {
         return result;
     }
 
+    /** Return the integer value of option NAME in OPTIONS, or DEFLT if
+     *  it is absent.  Throws IllegalArgumentException if the value is not
+     *  an integer. */
+    static int intOption(CommandArgs options, String name, int deflt) {
+        if (!options.contains(name)) {
+            return deflt;
+        }
+        try {
+            return Integer.parseInt(options.getFirst(name));
+        } catch (NumberFormatException excp) {
+            throw error("bad value for %s", name);
+        }
+    }
+
 }
@@ -0,0 +1,80 @@
+package tablut;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static tablut.BatchEvaluation.*;
+import static tablut.Evaluation.*;
+
+/** The parts of BatchEvaluation done in SIMD lanes through the incubating
+ *  Vector API.  This class can be loaded only when the module
+ *  jdk.incubator.vector has been added to the running program, so
+ *  BatchEvaluation uses it only when BatchEvaluation.VECTORIZED.  Each
+ *  method gives the same results as its scalar counterpart there.
+ *  @author Andrew Kaplan
+ */
+final class VectorBatch {
+
+    /** Lanes holding squares of a packed position. */
+    private static final VectorSpecies<Byte> BYTES =
+        ByteVector.SPECIES_PREFERRED;
+
+    /** Lanes holding the features or scores of consecutive positions. */
+    private static final VectorSpecies<Integer> INTS =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Set FEATURES[k][i] to feature k of position number i in BATCH,
+     *  for each feature k and each i < COUNT.  The squares of each
+     *  position are compared with the piece encodings BYTES.length() at
+     *  a time: white pieces (and the king) have the low bit set. */
+    static void features(byte[] batch, int count, int[][] features) {
+        int[] whites = features[0], blacks = features[1];
+        int lanes = BYTES.length();
+        for (int i = 0; i < count; i += 1) {
+            int base = i * STRIDE;
+            int white, black;
+            white = black = 0;
+            int king = -1;
+            for (int s = 0; s < STRIDE; s += lanes) {
+                VectorMask<Byte> inPosition = BYTES.indexInRange(s, STRIDE);
+                ByteVector squares =
+                    ByteVector.fromArray(BYTES, batch, base + s, inPosition);
+                white += squares.and((byte) 1).eq((byte) 1).trueCount();
+                black += squares.eq(BLACK_CODE).trueCount();
+                int k = squares.eq(KING_CODE).firstTrue();
+                if (k < lanes) {
+                    king = s + k;
+                }
+            }
+            whites[i] = white;
+            blacks[i] = black;
+            kingFeatures(batch, base, king, features, i);
+        }
+    }
+
+    /** Set SCORES[i] to the weighted sum, using WEIGHTS, of the features
+     *  FEATURES[k][i], for each i < COUNT, INTS.length() positions at a
+     *  time. */
+    static void scores(int[] weights, int[][] features, int count,
+                       int[] scores) {
+        int bound = INTS.loopBound(count);
+        int i;
+        for (i = 0; i < bound; i += INTS.length()) {
+            IntVector sum = IntVector.zero(INTS);
+            for (int k = 0; k < NUM_FEATURES; k += 1) {
+                sum = IntVector.fromArray(INTS, features[k], i)
+                    .mul(weights[k]).add(sum);
+            }
+            sum.intoArray(scores, i);
+        }
+        for (; i < count; i += 1) {
+            int score = 0;
+            for (int k = 0; k < NUM_FEATURES; k += 1) {
+                score += weights[k] * features[k][i];
+            }
+            scores[i] = score;
+        }
+    }
+}